@@ -0,0 +1,69 @@
+package bench;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.Animation;
+
+/**
+ * Measures advancing an animation by one game tick, and jumping to its
+ * last frame, as the number of frames in the animation grows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AnimationBenchmark {
+
+	private static final long TICK = 10;
+	private static final long FRAME_DURATION = 100;
+
+	@Param({"2", "8", "32"})
+	public int frames;
+
+	private Animation anim;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		Image image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		anim = new Animation();
+		for (int i=0; i<frames; i++)
+			anim.addFrame(image, FRAME_DURATION);
+	}
+
+	@Benchmark
+	public Image update()
+	{
+		anim.update(TICK);
+		return anim.getImage();
+	}
+
+	/**
+	 * Restarts the animation and moves straight to its last frame, as
+	 * after a long frame or when the animation speed is high.
+	 */
+	@Benchmark
+	public Image jumpToEnd()
+	{
+		anim.start();
+		anim.update(frames * FRAME_DURATION - 1);
+		return anim.getImage();
+	}
+}
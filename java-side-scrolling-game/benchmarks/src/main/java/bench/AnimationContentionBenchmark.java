@@ -0,0 +1,122 @@
+package bench;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import game2D.Animation;
+import game2D.AnimationClip;
+
+/**
+ * Measures animating many sprites on a simulation thread while a render
+ * thread reads their current images, as with threaded rendering. The
+ * "lockFree" group uses Animation as it is; the "locked" group wraps each
+ * animation so that every update and read takes its monitor, which is how
+ * Animation used to behave. Each group reports the time for one pass over
+ * all the sprites by each thread.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AnimationContentionBenchmark {
+
+	private static final long TICK = 10;
+	private static final int FRAMES = 7;
+	private static final long FRAME_DURATION = 200;
+
+	@Param({"100", "1000"})
+	public int sprites;
+
+	private Animation [] anims;
+	private LockedAnimation [] locked;
+
+	/**
+	 * An animation whose updates and reads all take its monitor.
+	 */
+	private static class LockedAnimation {
+
+		private final Animation anim;
+
+		LockedAnimation(Animation anim) { this.anim = anim; }
+
+		synchronized void update(long elapsed) { anim.update(elapsed); }
+
+		synchronized Image getImage() { return anim.getImage(); }
+	}
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		Image [] images = new Image[FRAMES];
+		long [] durations = new long[FRAMES];
+		for (int i=0; i<FRAMES; i++)
+		{
+			images[i] = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+			durations[i] = FRAME_DURATION;
+		}
+		AnimationClip clip = new AnimationClip(images, durations);
+
+		anims = new Animation[sprites];
+		locked = new LockedAnimation[sprites];
+		for (int i=0; i<sprites; i++)
+		{
+			anims[i] = new Animation(clip);
+			locked[i] = new LockedAnimation(new Animation(clip));
+		}
+	}
+
+	@Benchmark
+	@Group("lockFree")
+	@GroupThreads(1)
+	public void simulate()
+	{
+		for (Animation a: anims)
+			a.update(TICK);
+	}
+
+	@Benchmark
+	@Group("lockFree")
+	@GroupThreads(1)
+	public void render(Blackhole bh)
+	{
+		for (Animation a: anims)
+			bh.consume(a.getImage());
+	}
+
+	@Benchmark
+	@Group("locked")
+	@GroupThreads(1)
+	public void simulateLocked()
+	{
+		for (LockedAnimation a: locked)
+			a.update(TICK);
+	}
+
+	@Benchmark
+	@Group("locked")
+	@GroupThreads(1)
+	public void renderLocked(Blackhole bh)
+	{
+		for (LockedAnimation a: locked)
+			bh.consume(a.getImage());
+	}
+}
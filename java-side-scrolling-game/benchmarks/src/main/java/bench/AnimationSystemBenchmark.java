@@ -0,0 +1,97 @@
+package bench;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.Animation;
+import game2D.AnimationClip;
+import game2D.AnimationSystem;
+import game2D.Sprite;
+
+/**
+ * Measures one animation tick for a crowd of sprites, updating each
+ * Animation in turn ("perObject") against advancing them all with an
+ * AnimationSystem on one core ("system") and split across every core
+ * ("systemParallel"). The parallel case only differs from the serial one
+ * with more than one core and at least 2048 sprites.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AnimationSystemBenchmark {
+
+	private static final long TICK = 10;
+	private static final int FRAMES = 7;
+	private static final long FRAME_DURATION = 200;
+
+	@Param({"100", "1000", "10000"})
+	public int sprites;
+
+	private Animation [] anims;
+	private AnimationSystem system;
+	private AnimationSystem parallel;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		Image [] images = new Image[FRAMES];
+		long [] durations = new long[FRAMES];
+		for (int i=0; i<FRAMES; i++)
+		{
+			images[i] = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+			durations[i] = FRAME_DURATION;
+		}
+		AnimationClip clip = new AnimationClip(images, durations);
+
+		anims = new Animation[sprites];
+		system = new AnimationSystem();
+		parallel = new AnimationSystem();
+		parallel.setParallelism(ForkJoinPool.getCommonPoolParallelism());
+		for (int i=0; i<sprites; i++)
+		{
+			anims[i] = new Animation(clip);
+			system.add(new Sprite(new Animation(clip)));
+			parallel.add(new Sprite(new Animation(clip)));
+		}
+	}
+
+	@Benchmark
+	public Animation [] perObject()
+	{
+		for (Animation a: anims)
+			a.update(TICK);
+		return anims;
+	}
+
+	@Benchmark
+	public AnimationSystem system()
+	{
+		system.update(TICK);
+		return system;
+	}
+
+	@Benchmark
+	public AnimationSystem systemParallel()
+	{
+		parallel.update(TICK);
+		return parallel;
+	}
+}
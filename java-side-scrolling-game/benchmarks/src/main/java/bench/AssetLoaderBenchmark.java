@@ -0,0 +1,121 @@
+package bench;
+
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.AssetCache;
+import game2D.AssetLoader;
+import game2D.CompatibleImage;
+import game2D.TextureAtlas;
+import game2D.TileMap;
+
+/**
+ * Measures loading every image the game uses from cold: one at a time
+ * with ImageIcon, as the game used to, one at a time with ImageIO alone,
+ * one at a time with CompatibleImage, which decodes with ImageIO and then
+ * converts to the screen's format, and with an AssetLoader doing the same
+ * as CompatibleImage on a number of threads. The loader only beats
+ * serialCompatible when there are processors to spare. ImageIcon is
+ * given images from Toolkit.createImage(), as Toolkit.getImage() would
+ * hand back the images it decoded the first time. Must be run from the
+ * game folder so that the images can be found.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AssetLoaderBenchmark {
+
+	@Param({"1", "2", "4"})
+	public int threads;
+
+	private ArrayList<String> paths = new ArrayList<String>();
+	private AssetCache assets;
+	private AssetLoader loader;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		paths.add("images/level1Background.png");
+		paths.add("images/level2Background.png");
+		for (String tile: TileMap.listImages("maps", "level2.txt"))
+			if (!paths.contains(tile)) paths.add(tile);
+		paths.addAll(TextureAtlas.findImages("images/player"));
+		paths.addAll(TextureAtlas.findImages("images/enemies"));
+		paths.addAll(TextureAtlas.findImages("images/treasure"));
+		paths.addAll(TextureAtlas.findImages("images/powerups"));
+
+		assets = new AssetCache();
+		loader = new AssetLoader(assets, threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		loader.shutdown();
+	}
+
+	@Benchmark
+	public Image serialImageIcon()
+	{
+		Image last = null;
+		for (String path: paths)
+		{
+			last = new ImageIcon(Toolkit.getDefaultToolkit().createImage(path)).getImage();
+		}
+		return last;
+	}
+
+	@Benchmark
+	public Image serialImageIO() throws IOException
+	{
+		Image last = null;
+		for (String path: paths)
+		{
+			last = ImageIO.read(new File(path));
+		}
+		return last;
+	}
+
+	@Benchmark
+	public Image serialCompatible()
+	{
+		Image last = null;
+		for (String path: paths)
+		{
+			last = CompatibleImage.load(path);
+		}
+		return last;
+	}
+
+	@Benchmark
+	public AssetCache loader()
+	{
+		assets.clear();
+		loader.load(paths).join();
+		return assets;
+	}
+}
@@ -0,0 +1,62 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.AudioMixer;
+
+/**
+ * Measures mixing one second of sound offline with a number of voices
+ * playing at once. A second of sound is 44100 frames, so a score of
+ * 1000 us means the mixer runs a thousand times faster than real time.
+ * Must be run from the game folder so that the sounds can be found.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AudioMixerBenchmark {
+
+	private static final int SECOND = 44100;
+	private static final String [] EFFECTS = { "sounds/enemyhurt.wav", "sounds/gameover.wav", "sounds/goal.wav" };
+
+	@Param({"1", "8", "32"})
+	public int voices;
+
+	private AudioMixer mixer;
+	private short [][] effects;
+	private short [] out = new short[SECOND * AudioMixer.CHANNELS];
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		effects = new short[EFFECTS.length][];
+		for (int e=0; e<EFFECTS.length; e++)
+			effects[e] = AudioMixer.decode(EFFECTS[e]);
+		mixer = new AudioMixer(voices, AudioMixer.DEFAULT_PERIOD);
+	}
+
+	@Benchmark
+	public short [] mixSecond()
+	{
+		// Keep every voice busy; plays beyond the pool steal the oldest voices
+		for (int v=0; v<voices; v++)
+			mixer.play(effects[v % effects.length], 0.5f);
+		mixer.render(out, SECOND);
+		return out;
+	}
+}
@@ -0,0 +1,118 @@
+package bench;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.Animation;
+import game2D.Broadphase;
+import game2D.SpatialHash;
+import game2D.Sprite;
+import game2D.SweepAndPrune;
+
+/**
+ * Compares the broadphases on a side scrolling level: enemy sized sprites
+ * spread along a strip one screen high, with one sprite for every two
+ * tiles of level width, each walking left or right a little every tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BroadphaseBenchmark {
+
+	private static final int TILE = 32;
+	private static final int SPRITE = 32;
+	private static final int HEIGHT = 700;
+	private static final float SPEED = 1.5f;	// pixels moved per tick
+
+	@Param({"hash", "sap"})
+	public String impl;
+
+	@Param({"30", "300", "3000"})
+	public int sprites;
+
+	private Broadphase broadphase;
+	private Sprite [] list;
+	private float levelWidth;
+	private float [] queryX = new float[256];
+	private float [] queryY = new float[256];
+	private int next;
+	private ArrayList<Sprite> out = new ArrayList<Sprite>();
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		broadphase = impl.equals("sap") ? new SweepAndPrune() : new SpatialHash(TILE, TILE);
+		levelWidth = sprites * TILE * 2;
+
+		Animation anim = new Animation();
+		anim.addFrame(new BufferedImage(SPRITE, SPRITE, BufferedImage.TYPE_INT_ARGB), 100);
+
+		Random random = new Random(1);
+		list = new Sprite[sprites];
+		for (int i=0; i<sprites; i++)
+		{
+			Sprite s = new Sprite(anim);
+			s.setX(random.nextFloat() * (levelWidth - SPRITE));
+			s.setY(random.nextFloat() * (HEIGHT - SPRITE));
+			s.setVelocityX(random.nextBoolean() ? SPEED : -SPEED);
+			list[i] = s;
+			broadphase.add(s);
+		}
+		broadphase.update();
+
+		for (int i=0; i<queryX.length; i++)
+		{
+			queryX[i] = random.nextFloat() * (levelWidth - SPRITE);
+			queryY[i] = random.nextFloat() * (HEIGHT - SPRITE);
+		}
+	}
+
+	/**
+	 * One tick: every sprite moves, turning at the ends of the level, then
+	 * the broadphase catches up and reports the overlapping pairs.
+	 */
+	@Benchmark
+	public int tick()
+	{
+		for (Sprite s: list)
+		{
+			float x = s.getX() + s.getVelocityX();
+			if (x < 0 || x > levelWidth - SPRITE)
+				s.setVelocityX(-s.getVelocityX());
+			else
+				s.setX(x);
+		}
+		broadphase.update();
+		out.clear();
+		return broadphase.findPairs(out);
+	}
+
+	/**
+	 * A player sized query somewhere in the level.
+	 */
+	@Benchmark
+	public int query()
+	{
+		int i = next++ & (queryX.length - 1);
+		out.clear();
+		return broadphase.query(queryX[i], queryY[i], SPRITE, SPRITE, out);
+	}
+}
@@ -0,0 +1,95 @@
+package bench;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.TileMap;
+
+/**
+ * Compares drawing a tile map tile by tile with drawing it from the
+ * chunk cache, while scrolling, and the cost of editing a tile when its
+ * chunk has to be drawn again. A chunk size of 0 means no cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ChunkCacheBenchmark {
+
+	private static final int SCREEN_WIDTH = 900;
+	private static final int SCREEN_HEIGHT = 700;
+	private static final int MAX_CHUNKS = 16;
+
+	@Param({"0", "8", "16"})
+	public int chunkSize;
+
+	@Param({"256", "2048"})
+	public int mapWidth;
+
+	private TileMap map;
+	private BufferedImage screen;
+	private Graphics2D g;
+	private int xoff;
+	private int editX;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		map = new TileMap();
+		if (!map.loadMap(MapFiles.create(mapWidth, 11), "map.txt"))
+			throw new IllegalStateException("Could not load generated map");
+		map.setChunkCache(chunkSize, MAX_CHUNKS);
+
+		screen = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		g = screen.createGraphics();
+		g.setClip(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		g.dispose();
+	}
+
+	/**
+	 * Scrolls a few pixels each call, wrapping round at the end of the map
+	 */
+	@Benchmark
+	public BufferedImage scroll()
+	{
+		xoff -= 4;
+		if (xoff < SCREEN_WIDTH - map.getPixelWidth()) xoff = 0;
+		map.draw(g, xoff, SCREEN_HEIGHT - map.getPixelHeight());
+		return screen;
+	}
+
+	/**
+	 * Changes a tile on screen and draws the map
+	 */
+	@Benchmark
+	public BufferedImage editAndDraw()
+	{
+		editX = (editX + 1) % (SCREEN_WIDTH / map.getTileWidth());
+		char ch = map.getTileChar(editX, 5);
+		map.setTileChar(ch == TileMap.AIR ? 'l' : TileMap.AIR, editX, 5);
+		map.draw(g, 0, SCREEN_HEIGHT - map.getPixelHeight());
+		return screen;
+	}
+}
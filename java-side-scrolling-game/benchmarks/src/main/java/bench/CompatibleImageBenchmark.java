@@ -0,0 +1,82 @@
+package bench;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.CompatibleImage;
+
+/**
+ * Measures drawing a background, a tile and an animation frame onto a
+ * screen sized buffer, as loaded by ImageIcon, as decoded by ImageIO, and
+ * converted by CompatibleImage. The buffer is TYPE_INT_RGB, as drawn to by
+ * HeadlessRunner, since the benchmark runs without a screen; on a screen
+ * the converted images can also be kept in video memory. Must be run from
+ * the game folder so that the images can be found.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CompatibleImageBenchmark {
+
+	@Param({"images/level1Background.png", "maps/tiles/leafy_ground01.png", "images/player/right/walk/walk0.png"})
+	public String path;
+
+	@Param({"imageIcon", "imageIO", "compatible"})
+	public String loader;
+
+	private BufferedImage screen = new BufferedImage(900, 700, BufferedImage.TYPE_INT_RGB);
+	private Graphics2D g;
+	private Image image;
+	private int x;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		if (loader.equals("imageIcon"))
+			image = new ImageIcon(Toolkit.getDefaultToolkit().createImage(path)).getImage();
+		else if (loader.equals("imageIO"))
+			image = ImageIO.read(new File(path));
+		else
+			image = CompatibleImage.load(path);
+		g = screen.createGraphics();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		g.dispose();
+	}
+
+	@Benchmark
+	public BufferedImage blit()
+	{
+		// Move about a little, as sprites do, so every call draws
+		x = (x + 1) & 31;
+		g.drawImage(image, x, x, null);
+		return screen;
+	}
+}
@@ -0,0 +1,80 @@
+package bench;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Writes synthetic tile maps of any size to a temporary folder so the
+ * benchmarks can measure how the tile map scales without depending on
+ * the level files shipped with the game.
+ */
+final class MapFiles {
+
+	static final int TILE_SIZE = 64;
+
+	private MapFiles() { }
+
+	/**
+	 * Creates a folder holding 'map.txt' of the given size in tiles plus
+	 * the tile images it refers to. The bottom row is solid ground and
+	 * roughly one in eight of the other cells in the lower half is a ledge.
+	 *
+	 * @param width		Map width in tiles
+	 * @param height	Map height in tiles
+	 * @return The path of the folder the map was written to
+	 */
+	static String create(int width, int height) throws IOException
+	{
+		File dir = Files.createTempDirectory("tilemap").toFile();
+		dir.deleteOnExit();
+
+		writeTile(new File(dir, "ground.png"), Color.green.darker());
+		writeTile(new File(dir, "ledge.png"), Color.orange);
+
+		File map = new File(dir, "map.txt");
+		map.deleteOnExit();
+		Random random = new Random(42);
+		try (PrintWriter out = new PrintWriter(map))
+		{
+			out.println(width + " " + height + " " + TILE_SIZE + " " + TILE_SIZE);
+			out.println("#g=ground.png");
+			out.println("#l=ledge.png");
+			out.println("#map");
+			StringBuilder row = new StringBuilder(width);
+			for (int r=0; r<height; r++)
+			{
+				row.setLength(0);
+				for (int c=0; c<width; c++)
+				{
+					if (r == height-1)
+						row.append('g');
+					else if (r >= height/2 && random.nextInt(8) == 0)
+						row.append('l');
+					else
+						row.append('.');
+				}
+				out.println(row);
+			}
+		}
+		return dir.getPath();
+	}
+
+	private static void writeTile(File file, Color colour) throws IOException
+	{
+		BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = tile.createGraphics();
+		g.setColor(colour);
+		g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+		g.dispose();
+		ImageIO.write(tile, "png", file);
+		file.deleteOnExit();
+	}
+}
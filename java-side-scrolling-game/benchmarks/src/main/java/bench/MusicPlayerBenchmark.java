@@ -0,0 +1,107 @@
+package bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.AudioMixer;
+import game2D.MusicPlayer;
+
+/**
+ * Measures how long a music track takes to start, streamed by MusicPlayer
+ * against decoded whole as a Clip would load it, for a short and a long
+ * track. "stream" plays each track in turn on an offline mixer and mixes
+ * until the track is heard. The tracks are written to temporary WAV files
+ * by repeating one of the game's sounds. Must be run from the game folder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class MusicPlayerBenchmark {
+
+	@Param({"10", "120"})
+	public int trackSeconds;
+
+	private File [] tracks = new File[2];
+	private int next;
+	private AudioMixer mixer;
+	private MusicPlayer player;
+	private short [] period = new short[AudioMixer.DEFAULT_PERIOD * AudioMixer.CHANNELS];
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		short [] sound = AudioMixer.decode("sounds/gameover.wav");
+		int samples = (int)(trackSeconds * AudioMixer.FORMAT.getFrameRate()) * AudioMixer.CHANNELS;
+		byte [] data = new byte[samples * 2];
+		for (int i=0; i<samples; i++)
+		{
+			short s = sound[i % sound.length];
+			data[2*i] = (byte)s;
+			data[2*i + 1] = (byte)(s >> 8);
+		}
+		for (int t=0; t<tracks.length; t++)
+		{
+			tracks[t] = File.createTempFile("track" + t, ".wav");
+			AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(data), AudioMixer.FORMAT,
+					samples / AudioMixer.CHANNELS);
+			AudioSystem.write(in, AudioFileFormat.Type.WAVE, tracks[t]);
+		}
+
+		mixer = new AudioMixer(1, AudioMixer.DEFAULT_PERIOD);
+		player = new MusicPlayer(mixer);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		System.out.println();
+		System.out.printf("resident  streamed %.1f KB  decoded %.1f KB%n",
+				player.getResidentBytes() / 1024.0, tracks[0].length() / 1024.0);
+		player.close();
+		for (File f: tracks)
+			f.delete();
+	}
+
+	@Benchmark
+	public short [] stream()
+	{
+		player.play(tracks[next].getPath(), 0);
+		next = 1 - next;
+		do
+		{
+			mixer.render(period, AudioMixer.DEFAULT_PERIOD);
+			Thread.yield();
+		}
+		while (!player.isStarted());
+		return period;
+	}
+
+	@Benchmark
+	public short [] decodeWhole() throws Exception
+	{
+		return AudioMixer.decode(tracks[0].getPath());
+	}
+}
@@ -0,0 +1,95 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.AudioMixer;
+import game2D.Sound;
+import game2D.SoundEngine;
+
+/**
+ * Compares triggering a sound effect the old way, a new Sound thread that
+ * reads, decodes and opens the file on every play, against SoundEngine.
+ * "play" queues a decoded effect on an offline AudioMixer and mixes one
+ * frame, so it is the cost of starting a voice without waiting for the
+ * mixer's thread. "playStarted" plays through a running SoundEngine and
+ * waits for its mixer to start the voice, which happens at the start of
+ * the next period, so it is bounded by the period length. "soundThread"
+ * waits for the Sound thread to finish, which without an audio device is
+ * as soon as it has decoded the file and failed to open a line. The
+ * engine uses one thread however many sounds play; the old way used one
+ * per sound playing. Must be run from the game folder so that the sounds
+ * can be found.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SoundEngineBenchmark {
+
+	private static final String EFFECT = "sounds/enemyhurt.wav";
+
+	private SoundEngine engine;
+	private int effect;
+	private AudioMixer offline;
+	private short [] samples;
+	private short [] frame = new short[AudioMixer.CHANNELS];
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		engine = new SoundEngine(8);
+		effect = engine.load(EFFECT);
+		offline = new AudioMixer(8, AudioMixer.DEFAULT_PERIOD);
+		samples = AudioMixer.decode(EFFECT);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		System.out.println();
+		System.out.println(engine.summary());
+		engine.close();
+	}
+
+	@Benchmark
+	public short [] play()
+	{
+		offline.play(samples, 1);
+		offline.render(frame, 1);
+		return frame;
+	}
+
+	@Benchmark
+	public long playStarted()
+	{
+		long plays = engine.getPlays();
+		engine.play(effect);
+		while (engine.getPlays() == plays)
+			Thread.yield();
+		return plays;
+	}
+
+	@Benchmark
+	public Sound soundThread() throws InterruptedException
+	{
+		Sound s = new Sound(EFFECT);
+		s.start();
+		s.join();
+		return s;
+	}
+}
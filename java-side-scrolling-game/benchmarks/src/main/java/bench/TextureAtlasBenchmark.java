@@ -0,0 +1,121 @@
+package bench;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.TextureAtlas;
+
+/**
+ * Compares the creature animation frames loaded and drawn one image per
+ * frame against the same frames packed into a TextureAtlas. The load
+ * benchmarks read every frame file against reading an atlas saved with
+ * TextureAtlas.write(). The draw benchmarks draw a screen's worth of
+ * sprites to an off screen image; headless drawing is done in software,
+ * so they show the cost of the sub-rectangle copy but not the savings in
+ * accelerated image caching seen on screen. Must be run from the game
+ * folder so that the frame images can be found.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TextureAtlasBenchmark {
+
+	@Param({"100"})
+	public int sprites;
+
+	private List<String> paths;
+	private BufferedImage [] frames;
+	private TextureAtlas.Region [] regions;
+	private BufferedImage screen;
+	private Graphics2D g;
+	private File folder;
+	private String index;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		paths = new ArrayList<String>(TextureAtlas.findImages("images/player"));
+		paths.addAll(TextureAtlas.findImages("images/enemies"));
+
+		frames = new BufferedImage[paths.size()];
+		for (int i=0; i<frames.length; i++)
+			frames[i] = ImageIO.read(new File(paths.get(i)));
+
+		TextureAtlas atlas = TextureAtlas.pack(paths, frames, TextureAtlas.DEFAULT_PAGE_SIZE);
+		regions = new TextureAtlas.Region[frames.length];
+		for (int i=0; i<regions.length; i++)
+			regions[i] = atlas.getRegion(paths.get(i));
+
+		folder = Files.createTempDirectory("atlas").toFile();
+		index = new File(folder, "sprites.atlas").getPath();
+		atlas.write(index);
+
+		screen = new BufferedImage(900, 700, BufferedImage.TYPE_INT_RGB);
+		g = screen.createGraphics();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		g.dispose();
+		for (File f: folder.listFiles())
+			f.delete();
+		folder.delete();
+	}
+
+	@Benchmark
+	public BufferedImage [] loadFrames() throws IOException
+	{
+		BufferedImage [] loaded = new BufferedImage[paths.size()];
+		for (int i=0; i<loaded.length; i++)
+			loaded[i] = ImageIO.read(new File(paths.get(i)));
+		return loaded;
+	}
+
+	@Benchmark
+	public TextureAtlas loadAtlas() throws IOException
+	{
+		return TextureAtlas.read(index);
+	}
+
+	@Benchmark
+	public BufferedImage drawFrames()
+	{
+		for (int s=0; s<sprites; s++)
+			g.drawImage(frames[s % frames.length], (s * 37) % 800, (s * 53) % 600, null);
+		return screen;
+	}
+
+	@Benchmark
+	public BufferedImage drawRegions()
+	{
+		for (int s=0; s<sprites; s++)
+			regions[s % regions.length].draw(g, (s * 37) % 800, (s * 53) % 600);
+		return screen;
+	}
+}
@@ -0,0 +1,115 @@
+package bench;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.TileMap;
+
+/**
+ * Measures loading, reading and drawing a tile map as the map grows. The screen
+ * stays the same size, so ideally draw time should not depend on the
+ * map width.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TileMapBenchmark {
+
+	private static final int SCREEN_WIDTH = 900;
+	private static final int SCREEN_HEIGHT = 700;
+
+	@Param({"32", "256", "2048"})
+	public int mapWidth;
+
+	@Param({"11", "64"})
+	public int mapHeight;
+
+	private String folder;
+	private TileMap map;
+	private BufferedImage screen;
+	private Graphics2D g;
+	private int xoff;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		folder = MapFiles.create(mapWidth, mapHeight);
+		map = new TileMap();
+		if (!map.loadMap(folder, "map.txt"))
+			throw new IllegalStateException("Could not load generated map");
+
+		screen = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		g = screen.createGraphics();
+		g.setClip(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+
+		// Look at the middle of the map, as the game does when the player walks along it
+		xoff = Math.min(0, SCREEN_WIDTH/2 - map.getPixelWidth()/2);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		g.dispose();
+	}
+
+	@Benchmark
+	public BufferedImage draw()
+	{
+		map.draw(g, xoff, SCREEN_HEIGHT - map.getPixelHeight());
+		return screen;
+	}
+
+	/**
+	 * Reads every tile character, as the collision code does for the
+	 * tiles around each sprite.
+	 */
+	@Benchmark
+	public int scanTiles()
+	{
+		int solid = 0;
+		for (int y=0; y<mapHeight; y++)
+			for (int x=0; x<mapWidth; x++)
+				if (map.getTileChar(x, y) != TileMap.AIR) solid++;
+		return solid;
+	}
+
+	/**
+	 * Asks whether a creature sized box overlaps a solid tile at every
+	 * tile position along the bottom of the map, as the collision code does.
+	 */
+	@Benchmark
+	public int solidQueries()
+	{
+		int hits = 0;
+		float y = map.getPixelHeight() - 3*map.getTileHeight();
+		for (int x=0; x<mapWidth; x++)
+			if (map.anySolidInRect(x*map.getTileWidth() + 5, y, 59, 130)) hits++;
+		return hits;
+	}
+
+	@Benchmark
+	public TileMap loadMap()
+	{
+		TileMap fresh = new TileMap();
+		fresh.loadMap(folder, "map.txt");
+		return fresh;
+	}
+}
@@ -0,0 +1,83 @@
+package main;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.HeadlessRunner;
+
+/**
+ * Checks that a steady state Game.update() tick allocates nothing, so the
+ * garbage collector never has to run while a level is being played.
+ *
+ * Setup runs a burst of ticks, measuring the bytes the thread allocates
+ * with the JVM's per thread counter, and fails the run if there are any.
+ * The benchmark itself runs the same ticks as GameUpdateBenchmark; add
+ * '-prof gc' and gc.alloc.rate.norm should be 0 bytes per tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GameAllocationBenchmark {
+
+	private static final int TICKS = GameUpdateBenchmark.TICKS;
+	private static final long TICK = GameUpdateBenchmark.TICK;
+	private static final int WARMUP_BURSTS = 200;	// bursts run before measuring, to load classes and fill pools
+
+	@Param({"3", "30", "300"})
+	public int enemies;
+
+	private Game game;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		game = new Game();
+		new HeadlessRunner(game, 900, 700).setDrawing(false);
+		game.init();
+		game.spawnEnemies(enemies);
+
+		for (int i=0; i<WARMUP_BURSTS; i++)
+			update();
+
+		com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long id = Thread.currentThread().getId();
+
+		// Reading the counter can itself allocate, so take that off
+		long start = threads.getThreadAllocatedBytes(id);
+		long overhead = threads.getThreadAllocatedBytes(id) - start;
+		long before = threads.getThreadAllocatedBytes(id);
+		update();
+		long allocated = threads.getThreadAllocatedBytes(id) - before - overhead;
+
+		if (allocated != 0)
+			throw new IllegalStateException("update allocated " + allocated + " bytes in " + TICKS + " ticks");
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public Game update()
+	{
+		game.placeEnemies();
+		for (int i=0; i<TICKS; i++)
+			game.update(TICK);
+		return game;
+	}
+}
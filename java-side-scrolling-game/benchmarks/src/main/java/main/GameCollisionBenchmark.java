@@ -0,0 +1,123 @@
+package main;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.Creature;
+import game2D.HeadlessRunner;
+import game2D.Sprite;
+import game2D.TileCollider;
+import game2D.TileMap;
+
+/**
+ * Measures the sprite and tile map collision checks made for each
+ * creature on every tick. Must be run from the game folder so that the
+ * level and sprite images can be found.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GameCollisionBenchmark {
+
+	private static final long TICK = GameUpdateBenchmark.TICK;
+	private static final float GRAVITY_STEP = 0.1f;	// distance fallen in one tick of gravity from standing
+
+	@Param({"3", "30", "300"})
+	public int enemies;
+
+	private Game game;
+	private Creature player;
+	private TileMap map;
+	private TileCollider collider = new TileCollider();
+	private float width;		// the walker's collision box
+	private float height;
+	private float groundY;
+	private float wallX;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		game = new Game();
+		new HeadlessRunner(game, 900, 700).setDrawing(false);
+		game.init();
+		game.spawnEnemies(enemies);
+
+		player = game.getPlayer();
+		Creature walker = game.loadEnemySprite();
+		width = walker.getBoxWidth();
+		height = walker.getBoxHeight();
+
+		// Stand the walker on the ground just to the left of the
+		// single tile ledge in column 16 of level 1
+		map = game.getCurrentMap();
+		groundY = map.getPixelHeight() - map.getTileHeight() - height;
+		wallX = 16*map.getTileWidth() - width - 1;
+	}
+
+	/**
+	 * Player at the start of the level, clear of every other sprite, so
+	 * the whole sprite list is searched.
+	 */
+	@Benchmark
+	public Sprite getSpriteCollision()
+	{
+		return game.getSpriteCollision(player);
+	}
+
+	/**
+	 * Falling through open air, nothing to hit
+	 */
+	@Benchmark
+	public boolean sweepOpen()
+	{
+		return collider.sweep(map, wallX - 200, groundY - 200, width, height,
+				Creature.MAX_SPEED*TICK, Creature.MAX_FALLING_SPEED*TICK);
+	}
+
+	/**
+	 * Walking along the ground into the ledge
+	 */
+	@Benchmark
+	public boolean sweepWall()
+	{
+		return collider.sweep(map, wallX, groundY, width, height,
+				Creature.MAX_SPEED*TICK, GRAVITY_STEP);
+	}
+
+	/**
+	 * Landing on the ground from just above it
+	 */
+	@Benchmark
+	public boolean sweepFloor()
+	{
+		return collider.sweep(map, wallX - 200, groundY - 1, width, height,
+				0, Creature.MAX_FALLING_SPEED*TICK);
+	}
+
+	/**
+	 * Moving ten tiles in one tick towards the ledge, far faster than any
+	 * creature moves, to show the cost grows with tiles crossed rather
+	 * than pixels
+	 */
+	@Benchmark
+	public boolean sweepFast()
+	{
+		return collider.sweep(map, wallX - 10*map.getTileWidth(), groundY, width, height,
+				10*map.getTileWidth(), GRAVITY_STEP);
+	}
+}
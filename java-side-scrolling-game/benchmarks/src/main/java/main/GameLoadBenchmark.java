@@ -0,0 +1,71 @@
+package main;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.HeadlessRunner;
+
+/**
+ * Measures creating a level's sprites, with the asset cache already
+ * holding their images (as on a restart) and with it emptied first (as
+ * on the first load). Must be run from the game folder so that the
+ * sprite images can be found.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GameLoadBenchmark {
+
+	@Param({"3", "30", "300"})
+	public int enemies;
+
+	private Game game;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		game = new Game();
+		new HeadlessRunner(game, 900, 700).setDrawing(false);
+		game.init();
+	}
+
+	/**
+	 * The level restart a player sees after dying.
+	 */
+	@Benchmark
+	public Game restart()
+	{
+		game.restart(false);
+		return game;
+	}
+
+	@Benchmark
+	public Game spawnEnemies()
+	{
+		game.spawnEnemies(enemies);
+		return game;
+	}
+
+	@Benchmark
+	public Game spawnEnemiesCold()
+	{
+		game.getAssets().clear();
+		game.spawnEnemies(enemies);
+		return game;
+	}
+}
@@ -0,0 +1,62 @@
+package main;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game2D.HeadlessRunner;
+
+/**
+ * Measures a single Game.update() tick with different numbers of enemies.
+ * Each invocation puts the sprites back at their starting positions and
+ * runs a short burst of ticks, so every invocation simulates the same
+ * stretch of the level. Must be run from the game folder so that the
+ * level and sprite images can be found.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GameUpdateBenchmark {
+
+	static final int TICKS = 100;
+	static final long TICK = 10;
+
+	@Param({"3", "30", "300"})
+	public int enemies;
+
+	private Game game;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		game = new Game();
+		new HeadlessRunner(game, 900, 700).setDrawing(false);
+		game.init();
+		game.spawnEnemies(enemies);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public Game update()
+	{
+		game.placeEnemies();
+		for (int i=0; i<TICKS; i++)
+			game.update(TICK);
+		return game;
+	}
+}
@@ -1,42 +1,74 @@
 package game2D;
 
 import java.awt.Image;
-import java.awt.Toolkit;
-import java.awt.image.CropImageFilter;
-import java.awt.image.FilteredImageSource;
-import java.awt.image.ImageFilter;
-import java.util.ArrayList;
-
-import javax.swing.ImageIcon;
 
 /**
     The Animation class manages a series of images (frames) and
     the amount of time to display each frame.
     
+    The frames themselves are held in an immutable AnimationClip that
+    can be shared between animations; an Animation is the playhead that
+    keeps its own place in the clip.
+    
+    An animation is driven by one thread, normally the simulation, which
+    is the only one that may change it. Other threads, such as a render
+    thread, may call getImage(), getClip(), getNoOfFrames() and
+    getFrameImage() at any time. No locks are taken: the current image is
+    published through a volatile field whenever the frame changes, so a
+    reader always sees a frame the animation has actually shown.
+    
     @author naomi lambert
 */
 public class Animation {
 
-    private ArrayList<AnimFrame> frames;	// The set of animation frames
-    private int currFrameIndex;				// Current frame animation is on
-    private long animTime;					// Current animation time
-    private long totalDuration;				// Total animation time
-    private float animSpeed = 1.0f;			// Animation speed, e.g. 2 will be twice as fast
+    volatile AnimationClip clip;			// The set of animation frames
+    private volatile Image current;			// The image for currFrameIndex, published to readers
+
+    // Playback state. While the animation is playing in an AnimationSystem
+    // the system holds the live copy of these and they are out of date.
+    int currFrameIndex;						// Current frame animation is on
+    long animTime;							// Current animation time
+    float animSpeed = 1.0f;					// Animation speed, e.g. 2 will be twice as fast
     
-    private boolean loop = true;			// True if the animation should continue looping
-    private boolean looped = false;			// True if 1 animation loop has been completed
-    private boolean play = true;			//	True if the animation should animate
-    private int stopFrame = -1;				// A frame to stop on, if < 0 it is ignored
+    boolean loop = true;					// True if the animation should continue looping
+    boolean looped = false;					// True if 1 animation loop has been completed
+    boolean play = true;					//	True if the animation should animate
+    int stopFrame = -1;						// A frame to stop on, if < 0 it is ignored
+
+    AnimationSystem system;					// The system playing this animation, if any
+    int slot = -1;							// The animation's slot in that system
 
     /**
      * Creates a new, empty Animation.
      */
     public Animation() {
-        frames = new ArrayList<AnimFrame>();
-        totalDuration = 0;
-        looped = false;
+        this(AnimationClip.EMPTY);
+    }
+
+    /**
+     * Creates a new Animation that plays 'clip' from the beginning.
+     * 
+     * @param clip The frames to play
+     */
+    public Animation(AnimationClip clip) {
+        this.clip = clip;
         start();
     }
+
+    /**
+     * Creates a new Animation that shares the clip of 'source' but
+     * keeps its own place in it, so that many sprites can play the
+     * same animation without copying its images. The new animation
+     * starts from the beginning, with the speed and looping of 'source'.
+     * 
+     * @param source The animation whose frames should be shared
+     */
+    public Animation(Animation source) {
+    	clip = source.clip;
+    	animSpeed = (source.system != null) ? source.system.getSpeed(source.slot) : source.animSpeed;
+    	loop = (source.system != null) ? source.system.getLoop(source.slot) : source.loop;
+    	start();
+    }
     
     /**
      * Adds an image to the animation with the specified
@@ -46,37 +78,61 @@ public class Animation {
      * @param duration	The time it should be displayed for
      * 
      */
-    public synchronized void addFrame(Image image, long duration)
+    public void addFrame(Image image, long duration)
     {
-        totalDuration += duration;
-        frames.add(new AnimFrame(image, totalDuration));
+    	// Clips are immutable, so this replaces the clip rather than
+    	// changing the frames of other animations sharing it
+    	clip = clip.withFrame(image, duration);
+    	if (system != null)
+    		system.setClip(slot, clip);
+    	else
+    		publish();
+    }
+
+    /**
+     * Gets the clip holding this animation's frames, e.g. to share
+     * it with another animation.
+     * 
+     * @return The clip being played
+     */
+    public AnimationClip getClip() {
+    	return clip;
     }
 
 
     /**
      *  Starts this animation over from the beginning.
      */
-    public synchronized void start() {
+    public void start() {
+    	if (system != null) {
+    		system.start(slot);
+    		return;
+    	}
         animTime = 0;
         currFrameIndex = 0;
         looped = false;
+        publish();
     }
 
     /**
      * Updates this animation's current image (frame) based
-     * on how much time has elapsed.
+     * on how much time has elapsed. Does nothing while the animation
+     * is playing in an AnimationSystem, which updates it instead.
      * 
      * @param elapsedTime	Time that has elapsed since last call
      */
-    public synchronized void update(long elapsedTime) {
+    public void update(long elapsedTime) {
     	
     	// If we are paused, don't update the animation
-    	if (!play) return; 
+    	if (!play || system != null) return; 
     	
     	elapsedTime = (long)(elapsedTime * animSpeed);
     	
-        if (frames.size() > 1) 
+    	AnimationClip clip = this.clip;
+        if (clip.getFrameCount() > 1) 
         {
+            int lastFrame = currFrameIndex;
+            long totalDuration = clip.getTotalDuration();
             animTime += elapsedTime;
 
             if (animTime >= totalDuration) 
@@ -93,9 +149,11 @@ public class Animation {
             	looped = true;
             }
 
-            while (animTime > getFrame(currFrameIndex).endTime) {
-                currFrameIndex++;
-            }
+            // Move on to the frame showing at animTime. The frame only
+            // ever moves forward here, as setAnimationFrame may have put
+            // it ahead of the time.
+            if (animTime > clip.getEndTime(currFrameIndex))
+                currFrameIndex = clip.getFrameAt(animTime);
             
             // If we hit a stopFrame, pause the animation
             // It will be -1 if we should not stop at this point
@@ -104,6 +162,8 @@ public class Animation {
             	play = false;
             	stopFrame = -1;
             }
+            
+            if (currFrameIndex != lastFrame) publish();
         }
     }
 
@@ -114,29 +174,28 @@ public class Animation {
      * 
      * @return The current image that should be displayed
      */
-    public synchronized Image getImage() {
-        if (frames.size() == 0) {
-            return null;
-        }
-        else {
-            return getFrame(currFrameIndex).image;
-        }
+    public Image getImage() {
+        return current;
     }
 
     /**
-     * Works out which frame to display, incorporating
-     * the offset.
-     * 
-     * @param i	The frame index to get
-     * 
-     * @return The animation frame corresponding to the index
+     * Makes the image for the current frame visible to other threads.
+     * Called by the driving thread whenever the frame or clip changes.
      */
-    private AnimFrame getFrame(int i) {
-        return (AnimFrame)frames.get(i);
+    private void publish() {
+    	show(clip, currFrameIndex);
+    }
+
+    /**
+     * Publishes frame 'f' of 'c' as the current image. Also called by
+     * an AnimationSystem playing this animation.
+     */
+    void show(AnimationClip c, int f) {
+    	current = (c.getFrameCount() == 0) ? null : c.getImage(f);
     }
     
     public int getNoOfFrames() {
-    	return this.frames.size();
+    	return clip.getFrameCount();
     }
 
     /**
@@ -149,10 +208,10 @@ public class Animation {
      */
     public Image getFrameImage(int i) {
     	
-    	if (i < 0 || i >= frames.size()) return null;
+    	AnimationClip c = clip;
+    	if (i < 0 || i >= c.getFrameCount()) return null;
     	
-    	AnimFrame frame = frames.get(i);
-    	return frame.image;
+    	return c.getImage(i);
     }
     
     /**
@@ -162,7 +221,10 @@ public class Animation {
      */
     public void setLoop(boolean shouldLoop)
     {
-    	loop = shouldLoop;
+    	if (system != null)
+    		system.setLoop(slot, shouldLoop);
+    	else
+    		loop = shouldLoop;
     }
     
     /**
@@ -170,7 +232,9 @@ public class Animation {
      * 
      * @return	True if it has looped once.
      */
-    public boolean hasLooped() { return looped; }
+    public boolean hasLooped() {
+    	return (system != null) ? system.hasLooped(slot) : looped;
+    }
     
     /**
      * Loads a complete animation from an animation sheet and adds each
@@ -183,7 +247,12 @@ public class Animation {
      */
     public void loadAnimationFromSheet(String fileName, int columns, int rows, int frameDuration)
     {
-    	Image sheet = new ImageIcon(fileName).getImage();
+    	Image sheet = CompatibleImage.load(fileName);
+    	if (sheet.getWidth(null) <= 0)
+    	{
+    		System.err.println("Unable to load animation sheet '" + fileName + "'");
+    		return;
+    	}
     	Image[] images = getImagesFromSheet(sheet, columns, rows);
     	
     	for (int i=0; i<images.length; i++)
@@ -221,22 +290,18 @@ public class Animation {
         int width = sheet.getWidth(null)/columns;
         int height = sheet.getHeight(null)/rows;
 
+        // every frame gets the transparency the whole sheet needs
+        int transparency = CompatibleImage.getTransparency(sheet);
+
         // for each column in each row
         for(int i = 0; i < rows; i++) 
         {
             for(int j = 0; j < columns; j++) 
             {
-            	// create an image filter
             	// top left (x) = j*width, (y) = i*height
-            	// extract rectangular region of width and height from origin x,y
-            	ImageFilter cropper = new CropImageFilter(j*width,i*height, width, height);
-            	
-                // create image source based on original sprite sheet with filter applied
-                // results in image source for cropped image being generated
-                FilteredImageSource cropped = new FilteredImageSource(sheet.getSource(), cropper);
-                
-                // create a new image using generated image source and store in appropriate array element
-                split[count] = Toolkit.getDefaultToolkit().createImage(cropped);
+            	// copy rectangular region of width and height from origin x,y
+            	// into a new image in the screen's format and store in appropriate array element
+                split[count] = CompatibleImage.copy(sheet, j*width, i*height, width, height, transparency);
                         
                 // increment count to prevent elements being overwritten
                 count++;
@@ -252,7 +317,10 @@ public class Animation {
      */
     public void pause()
     {
-    	play = false;
+    	if (system != null)
+    		system.setPlaying(slot, false);
+    	else
+    		play = false;
     }
     
     /**
@@ -261,10 +329,11 @@ public class Animation {
      */
     public void pauseAt(int frame)
     {
-    	if ((frame < 0) || (frame >= frames.size())) 
-    		stopFrame = 0;
+    	int f = ((frame < 0) || (frame >= clip.getFrameCount())) ? 0 : frame;
+    	if (system != null)
+    		system.setStopFrame(slot, f);
     	else
-    		stopFrame = frame; 
+    		stopFrame = f;
     }
     
     /**
@@ -272,7 +341,10 @@ public class Animation {
      */
     public void play()
     {
-    	play = true;
+    	if (system != null)
+    		system.setPlaying(slot, true);
+    	else
+    		play = true;
     }
     
     /**
@@ -282,7 +354,10 @@ public class Animation {
      */
     public void setAnimationSpeed(float rate)
     {
-    	animSpeed = rate;
+    	if (system != null)
+    		system.setSpeed(slot, rate);
+    	else
+    		animSpeed = rate;
     }
     
     /**
@@ -292,29 +367,12 @@ public class Animation {
      */
     public void setAnimationFrame(int f)
     {
-    	if (f < 0 || f >= frames.size()) return;
+    	if (f < 0 || f >= clip.getFrameCount()) return;
+    	if (system != null) {
+    		system.setFrame(slot, f);
+    		return;
+    	}
     	currFrameIndex = f;
-    }
-    
-    /**
-     * Private class to hold information about a given
-     * animation frame.
-     * 
-     */
-    private class AnimFrame {
-
-        Image image;	// The image for a frame.
-        long endTime;	// The time at which this frame ends.
-
-        /**
-         * Create a new frame with the given image and end time.
-         * 
-         * @param image		The image to use
-         * @param endTime	The associated end time
-         */
-        public AnimFrame(Image image, long endTime) {
-            this.image = image;
-            this.endTime = endTime;
-        }
+    	publish();
     }
 }
@@ -0,0 +1,112 @@
+package game2D;
+
+import java.awt.Image;
+import java.util.Arrays;
+
+/**
+ * An AnimationClip is the part of an animation that never changes while
+ * it plays: the frame images and how long each is shown for. Clips are
+ * immutable, so one clip can be shared by any number of Animations, each
+ * of which only keeps its own place in the clip. A thousand enemies
+ * walking therefore need one walk clip between them.
+ *
+ * Frame times are held as a table of running totals, so the frame to
+ * show at any time is found with a binary search.
+ *
+ * @author naomi lambert
+ */
+public final class AnimationClip {
+
+	/** A clip with no frames */
+	public static final AnimationClip EMPTY = new AnimationClip(new Image[0], new long[0]);
+
+	private final Image [] images;		// The image for each frame
+	private final long [] endTimes;		// The time at which each frame ends, in increasing order
+
+	/**
+	 * Creates a clip from the given frames.
+	 *
+	 * @param images	The image for each frame
+	 * @param durations	How long each frame is shown for, in milliseconds
+	 */
+	public AnimationClip(Image[] images, long[] durations)
+	{
+		if (images.length != durations.length)
+			throw new IllegalArgumentException("need one duration per image");
+
+		this.images = images.clone();
+		this.endTimes = new long[durations.length];
+		long total = 0;
+		for (int i=0; i<durations.length; i++)
+		{
+			total += durations[i];
+			endTimes[i] = total;
+		}
+	}
+
+	/**
+	 * Returns a new clip with the frames of this one plus one more frame
+	 * on the end. This clip is left unchanged.
+	 *
+	 * @param image		The image for the new frame
+	 * @param duration	How long it is shown for, in milliseconds
+	 * @return The new clip
+	 */
+	public AnimationClip withFrame(Image image, long duration)
+	{
+		int n = images.length;
+		Image [] newImages = Arrays.copyOf(images, n + 1);
+		long [] durations = new long[n + 1];
+		for (int i=0; i<n; i++)
+			durations[i] = endTimes[i] - ((i > 0) ? endTimes[i-1] : 0);
+		newImages[n] = image;
+		durations[n] = duration;
+		return new AnimationClip(newImages, durations);
+	}
+
+	/**
+	 * @return The number of frames in the clip
+	 */
+	public int getFrameCount() { return images.length; }
+
+	/**
+	 * @return The time taken to play every frame once, in milliseconds
+	 */
+	public long getTotalDuration()
+	{
+		return (endTimes.length == 0) ? 0 : endTimes[endTimes.length - 1];
+	}
+
+	/**
+	 * @param i The index of a frame
+	 * @return The image for frame 'i'
+	 */
+	public Image getImage(int i) { return images[i]; }
+
+	/**
+	 * @param i The index of a frame
+	 * @return The time at which frame 'i' ends, in milliseconds from the start
+	 */
+	public long getEndTime(int i) { return endTimes[i]; }
+
+	/**
+	 * Finds the frame showing at 'time': the first frame that has not
+	 * ended before it. A frame is still showing at the exact time it ends.
+	 *
+	 * @param time The time in milliseconds from the start of the clip
+	 * @return The index of the frame, or the last frame if 'time' is past the end
+	 */
+	public int getFrameAt(long time)
+	{
+		int lo = 0, hi = endTimes.length - 1;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (endTimes[mid] < time)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+}
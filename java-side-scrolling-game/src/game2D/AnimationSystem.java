@@ -0,0 +1,392 @@
+package game2D;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An AnimationSystem advances the animations of many sprites together.
+ * Each sprite added to the system gets a slot, and the playback state of
+ * the animation it is currently showing (time, speed, frame, looping and
+ * pausing) moves out of the Animation object into parallel arrays indexed
+ * by slot. update() then advances every slot in one pass over the arrays
+ * instead of visiting each Animation on the heap in turn, and can split
+ * the pass across cores for large crowds. Each slot also keeps the time
+ * at which something other than its time next needs to change, so on most
+ * ticks a slot is advanced by reading just its time, speed and that limit.
+ *
+ * While a sprite is in the system its animation still behaves as normal
+ * to the rest of the game: the Animation's methods read and change the
+ * slot, except update(), which does nothing because the system advances
+ * the animation instead. When the sprite changes animation with
+ * setAnimation() the new one takes over the slot. An animation that takes
+ * over a slot from another is not advanced until the next update(), as
+ * a Creature does not update an animation in the tick it switches to it.
+ *
+ * Like Animation, the system should only be changed and updated by one
+ * thread.
+ *
+ * @author naomi lambert
+ */
+public class AnimationSystem {
+
+	private static final int MIN_CHUNK = 1024;		// Fewest slots worth giving a core
+
+	private int count;
+	private Sprite [] sprites = new Sprite[16];
+	private Animation [] bound = new Animation[16];	// The animation playing in each slot
+	private AnimationClip [] clips = new AnimationClip[16];
+	private long [] time = new long[16];
+	private float [] speed = new float[16];
+	private int [] frame = new int[16];
+	private int [] stopFrame = new int[16];
+	private boolean [] loop = new boolean[16];
+	private boolean [] looped = new boolean[16];
+	private boolean [] playing = new boolean[16];
+	private boolean [] fresh = new boolean[16];	// Bound since the last update, so not advanced yet
+	private long [] limit = new long[16];		// Time before which only the slot's time changes
+
+	private int parallelism = 1;			// Most chunks to split an update into
+	private Chunk [] chunks = new Chunk[0];
+
+	/**
+	 * A range of slots advanced on a ForkJoin worker. Chunks are reused
+	 * from one update to the next.
+	 */
+	@SuppressWarnings("serial")
+	private class Chunk extends RecursiveAction {
+
+		int from, to;
+		long elapsed;
+
+		protected void compute() { advance(from, to, elapsed); }
+	}
+
+	/**
+	 * Adds a sprite so that its animations are advanced by this system.
+	 * A sprite can only be in one system at a time.
+	 *
+	 * @param s The sprite to add
+	 */
+	public void add(Sprite s)
+	{
+		if (s.animations != null) s.animations.remove(s);
+		if (count == sprites.length) grow();
+
+		int i = count++;
+		sprites[i] = s;
+		s.animations = this;
+		s.animSlot = i;
+		bind(i, s.getAnimation());
+	}
+
+	/**
+	 * Removes a sprite, handing its animation's playback state back to
+	 * the Animation object.
+	 *
+	 * @param s The sprite to remove
+	 * @return true if the sprite was in the system
+	 */
+	public boolean remove(Sprite s)
+	{
+		if (s.animations != this) return false;
+
+		int i = s.animSlot;
+		unbind(i);
+		s.animations = null;
+		s.animSlot = -1;
+
+		// Move the last slot into the gap
+		int last = --count;
+		if (i != last)
+		{
+			sprites[i] = sprites[last];
+			bound[i] = bound[last];
+			clips[i] = clips[last];
+			time[i] = time[last];
+			speed[i] = speed[last];
+			frame[i] = frame[last];
+			stopFrame[i] = stopFrame[last];
+			loop[i] = loop[last];
+			looped[i] = looped[last];
+			playing[i] = playing[last];
+			fresh[i] = fresh[last];
+			limit[i] = limit[last];
+			sprites[i].animSlot = i;
+			if (bound[i] != null) bound[i].slot = i;
+		}
+		sprites[last] = null;
+		bound[last] = null;
+		clips[last] = null;
+		return true;
+	}
+
+	/**
+	 * Removes every sprite.
+	 */
+	public void clear()
+	{
+		while (count > 0)
+			remove(sprites[count - 1]);
+	}
+
+	/**
+	 * @return The number of sprites in the system
+	 */
+	public int size() { return count; }
+
+	/**
+	 * Sets how many cores update() may use. Updates are only split when
+	 * there are at least MIN_CHUNK slots for each extra core, as smaller
+	 * batches are quicker on one core than the cost of handing them out.
+	 *
+	 * @param cores The number of cores to use, 1 to update on the calling thread only
+	 */
+	public void setParallelism(int cores)
+	{
+		parallelism = Math.max(1, cores);
+		chunks = new Chunk[parallelism];
+		for (int c=0; c<parallelism; c++)
+			chunks[c] = new Chunk();
+	}
+
+	/**
+	 * @return The most cores update() will use
+	 */
+	public int getParallelism() { return parallelism; }
+
+	/**
+	 * Advances the animation of every sprite in the system.
+	 *
+	 * @param elapsed The time passed since the last update in milliseconds
+	 */
+	public void update(long elapsed)
+	{
+		int n = Math.min(parallelism, count / MIN_CHUNK);
+		if (n <= 1)
+		{
+			advance(0, count, elapsed);
+			return;
+		}
+
+		// Hand all but the first chunk to the common pool and
+		// advance the first on this thread while they run
+		for (int c=0; c<n; c++)
+		{
+			Chunk chunk = chunks[c];
+			chunk.reinitialize();
+			chunk.from = (int)((long)count * c / n);
+			chunk.to = (int)((long)count * (c + 1) / n);
+			chunk.elapsed = elapsed;
+			if (c > 0) chunk.fork();
+		}
+		chunks[0].invoke();
+		for (int c=1; c<n; c++)
+			chunks[c].join();
+	}
+
+	/**
+	 * Advances slots 'from' to 'to' - 1. This is Animation.update() over
+	 * the arrays.
+	 */
+	private void advance(int from, int to, long elapsed)
+	{
+		for (int i=from; i<to; i++)
+		{
+			long t = time[i] + (long)(elapsed * speed[i]);
+			if (t < limit[i])
+			{
+				time[i] = t;
+				continue;
+			}
+
+			if (fresh[i])
+			{
+				fresh[i] = false;
+				refresh(i);
+				continue;
+			}
+			if (!playing[i]) continue;
+
+			AnimationClip clip = clips[i];
+			if (clip.getFrameCount() <= 1) continue;
+
+			long totalDuration = clip.getTotalDuration();
+			int f = frame[i];
+			int lastFrame = f;
+
+			if (t >= totalDuration)
+			{
+				if (loop[i])
+				{
+					t = t % totalDuration;
+					f = 0;
+				}
+				else
+				{
+					t = totalDuration;
+				}
+				looped[i] = true;
+			}
+
+			if (t > clip.getEndTime(f))
+				f = clip.getFrameAt(t);
+
+			if (f == stopFrame[i])
+			{
+				playing[i] = false;
+				stopFrame[i] = -1;
+			}
+
+			time[i] = t;
+			frame[i] = f;
+			refresh(i);
+			if (f != lastFrame) bound[i].show(clip, f);
+		}
+	}
+
+	/**
+	 * Works out the limit for slot 'i' after its state has changed. Until
+	 * its time reaches the limit the slot stays on the same frame without
+	 * wrapping. A slot that is fresh, paused, waiting to stop at a frame or
+	 * has fewer than two frames gets no limit, so advance() always checks it
+	 * in full.
+	 */
+	private void refresh(int i)
+	{
+		AnimationClip clip = clips[i];
+		int n = clip.getFrameCount();
+		int f = frame[i];
+		if (fresh[i] || !playing[i] || stopFrame[i] >= 0 || n <= 1 || f < 0 || f >= n)
+			limit[i] = Long.MIN_VALUE;
+		else
+			limit[i] = Math.min(clip.getEndTime(f) + 1, clip.getTotalDuration());
+	}
+
+	/**
+	 * Hands the sprite in slot 'i' a new animation, called when the
+	 * sprite's animation is changed.
+	 */
+	void rebind(int i, Animation anim)
+	{
+		unbind(i);
+		bind(i, anim);
+		fresh[i] = true;
+		refresh(i);
+	}
+
+	/**
+	 * Moves the playback state of 'anim' into slot 'i'.
+	 */
+	private void bind(int i, Animation anim)
+	{
+		bound[i] = anim;
+		fresh[i] = false;
+		if (anim == null)
+		{
+			clips[i] = AnimationClip.EMPTY;
+			playing[i] = false;
+			limit[i] = Long.MIN_VALUE;
+			return;
+		}
+		if (anim.system != null) anim.system.unbind(anim.slot);
+
+		clips[i] = anim.clip;
+		time[i] = anim.animTime;
+		speed[i] = anim.animSpeed;
+		frame[i] = anim.currFrameIndex;
+		stopFrame[i] = anim.stopFrame;
+		loop[i] = anim.loop;
+		looped[i] = anim.looped;
+		playing[i] = anim.play;
+		anim.system = this;
+		anim.slot = i;
+		refresh(i);
+	}
+
+	/**
+	 * Moves the playback state in slot 'i' back into its animation.
+	 */
+	private void unbind(int i)
+	{
+		Animation anim = bound[i];
+		if (anim == null) return;
+
+		anim.animTime = time[i];
+		anim.animSpeed = speed[i];
+		anim.currFrameIndex = frame[i];
+		anim.stopFrame = stopFrame[i];
+		anim.loop = loop[i];
+		anim.looped = looped[i];
+		anim.play = playing[i];
+		anim.system = null;
+		anim.slot = -1;
+		bound[i] = null;
+		clips[i] = AnimationClip.EMPTY;
+		playing[i] = false;
+		limit[i] = Long.MIN_VALUE;
+	}
+
+	// Playback controls for a bound animation, called by Animation
+
+	void start(int i)
+	{
+		time[i] = 0;
+		frame[i] = 0;
+		looped[i] = false;
+		refresh(i);
+		bound[i].show(clips[i], 0);
+	}
+
+	void setClip(int i, AnimationClip clip)
+	{
+		clips[i] = clip;
+		refresh(i);
+		bound[i].show(clip, frame[i]);
+	}
+
+	void setFrame(int i, int f)
+	{
+		frame[i] = f;
+		refresh(i);
+		bound[i].show(clips[i], f);
+	}
+
+	void setStopFrame(int i, int f)
+	{
+		stopFrame[i] = f;
+		refresh(i);
+	}
+
+	void setPlaying(int i, boolean play)
+	{
+		playing[i] = play;
+		refresh(i);
+	}
+
+	void setSpeed(int i, float s) { speed[i] = s; }
+
+	float getSpeed(int i) { return speed[i]; }
+
+	void setLoop(int i, boolean l) { loop[i] = l; }
+
+	boolean getLoop(int i) { return loop[i]; }
+
+	boolean hasLooped(int i) { return looped[i]; }
+
+	private void grow()
+	{
+		int size = sprites.length * 2;
+		sprites = Arrays.copyOf(sprites, size);
+		bound = Arrays.copyOf(bound, size);
+		clips = Arrays.copyOf(clips, size);
+		time = Arrays.copyOf(time, size);
+		speed = Arrays.copyOf(speed, size);
+		frame = Arrays.copyOf(frame, size);
+		stopFrame = Arrays.copyOf(stopFrame, size);
+		loop = Arrays.copyOf(loop, size);
+		looped = Arrays.copyOf(looped, size);
+		playing = Arrays.copyOf(playing, size);
+		fresh = Arrays.copyOf(fresh, size);
+		limit = Arrays.copyOf(limit, size);
+	}
+}
@@ -0,0 +1,248 @@
+package game2D;
+
+import java.awt.Image;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * AssetCache loads each image file once and hands the same Image to
+ * everything that asks for it by the same path. It also keeps one copy
+ * of each named animation, so that sprites of the same kind share their
+ * frames and only have their own playback position. Without it every
+ * enemy decoded its own copy of every frame, so memory and restart time
+ * grew with the number of enemies.
+ *
+ * Images can be preloaded in the background with preload(). Asking for an
+ * image that is still being preloaded waits for it rather than loading it
+ * a second time.
+ *
+ * Images can also come from texture atlases added with addAtlas(). An
+ * image packed into an atlas is handed out as its atlas region instead of
+ * being loaded from its own file.
+ *
+ * Cached images are never modified, so they are safe to share. The cache
+ * counts hits and misses, and estimates the memory its images take up
+ * once decoded, to show how well it is doing.
+ *
+ * @author naomi lambert
+ */
+public class AssetCache {
+
+	private static final int BYTES_PER_PIXEL = 4;	// Images are decoded to 32 bit ARGB
+
+	private HashMap<String,Image> images = new HashMap<String,Image>();
+	private HashMap<String,Animation> animations = new HashMap<String,Animation>();
+	private ArrayList<TextureAtlas> atlases = new ArrayList<TextureAtlas>();
+	private HashMap<String,CompletableFuture<Image>> loading = new HashMap<String,CompletableFuture<Image>>();
+
+	private int hits;				// Lookups answered from the cache
+	private int misses;				// Lookups that had to load or build the asset
+	private long residentBytes;		// Estimated decoded size of the cached images
+
+	/**
+	 * Gets the image at 'path', loading it the first time it is asked for.
+	 * If it is being preloaded this waits for it. If the file cannot be
+	 * read the returned image will have a width and height of -1, as with
+	 * ImageIcon.
+	 *
+	 * @param path The path to the image file
+	 * @return The shared image for the path
+	 */
+	public Image getImage(String path)
+	{
+		CompletableFuture<Image> pending;
+		synchronized (this)
+		{
+			Image image = find(path);
+			if (image != null)
+			{
+				hits++;
+				return image;
+			}
+
+			pending = loading.get(path);
+			if (pending == null)
+			{
+				misses++;
+				image = decode(path);
+				store(path, image);
+				return image;
+			}
+			hits++;
+		}
+		return pending.join();
+	}
+
+	/**
+	 * Starts loading the image at 'path' on 'executor', unless it is
+	 * already held or being loaded.
+	 *
+	 * @param path		The path to the image file
+	 * @param executor	Where to load the image
+	 * @return A future holding the shared image for the path once loaded
+	 */
+	public synchronized CompletableFuture<Image> preload(String path, Executor executor)
+	{
+		Image image = find(path);
+		if (image != null) return CompletableFuture.completedFuture(image);
+
+		CompletableFuture<Image> pending = loading.get(path);
+		if (pending != null) return pending;
+
+		misses++;
+		pending = CompletableFuture.supplyAsync(() -> {
+			Image loaded = decode(path);
+			synchronized (this)
+			{
+				// Only keep the image if the cache has not been cleared meanwhile
+				if (loading.remove(path) != null) store(path, loaded);
+			}
+			return loaded;
+		}, executor);
+		loading.put(path, pending);
+		return pending;
+	}
+
+	/**
+	 * Finds an image that is held or packed in an atlas, or null.
+	 */
+	private Image find(String path)
+	{
+		Image image = images.get(path);
+		if (image != null) return image;
+
+		for (TextureAtlas atlas: atlases)
+		{
+			image = atlas.getRegion(path);
+			if (image != null)
+			{
+				// The atlas pages are already counted as resident
+				images.put(path, image);
+				return image;
+			}
+		}
+		return null;
+	}
+
+	private void store(String path, Image image)
+	{
+		images.put(path, image);
+		int w = image.getWidth(null), h = image.getHeight(null);
+		if (w > 0 && h > 0) residentBytes += (long)w * h * BYTES_PER_PIXEL;
+	}
+
+	/**
+	 * Reads an image, decoding it straight away into the screen's format.
+	 */
+	private static Image decode(String path)
+	{
+		return CompatibleImage.load(path);
+	}
+
+	/**
+	 * Adds an atlas to take images from. Cached images packed in the atlas
+	 * are replaced by their regions, but images already handed out are not
+	 * changed, so atlases should be added before the images in them are
+	 * first used.
+	 *
+	 * @param atlas The atlas to add
+	 */
+	public synchronized void addAtlas(TextureAtlas atlas)
+	{
+		atlases.add(atlas);
+		for (int p=0; p<atlas.getPageCount(); p++)
+			residentBytes += (long)atlas.getPage(p).getWidth() * atlas.getPage(p).getHeight() * BYTES_PER_PIXEL;
+
+		for (String name: atlas.getNames())
+		{
+			Image old = images.remove(name);
+			if (old != null && old.getWidth(null) > 0 && old.getHeight(null) > 0)
+				residentBytes -= (long)old.getWidth(null) * old.getHeight(null) * BYTES_PER_PIXEL;
+		}
+	}
+
+	/**
+	 * @return The number of atlases added
+	 */
+	public synchronized int getAtlasCount() { return atlases.size(); }
+
+	/**
+	 * Gets a new Animation sharing the frames of the one stored under
+	 * 'key' by putAnimation, or null if there is none. The returned
+	 * animation starts at its first frame and has the stored one's speed
+	 * and looping setting.
+	 *
+	 * @param key The name the animation was stored under
+	 * @return A new animation with shared frames, or null
+	 */
+	public synchronized Animation getAnimation(String key)
+	{
+		Animation anim = animations.get(key);
+		if (anim == null)
+		{
+			misses++;
+			return null;
+		}
+		hits++;
+		return new Animation(anim);
+	}
+
+	/**
+	 * Stores 'anim' under 'key' so that later calls to getAnimation share
+	 * its frames. Frames should not be added to it afterwards.
+	 *
+	 * @param key	The name to store the animation under
+	 * @param anim	The animation to store
+	 * @return A new animation sharing the stored one's frames
+	 */
+	public synchronized Animation putAnimation(String key, Animation anim)
+	{
+		animations.put(key, anim);
+		return new Animation(anim);
+	}
+
+	/**
+	 * Empties the cache, including its atlases, and resets its counts.
+	 */
+	public synchronized void clear()
+	{
+		images.clear();
+		animations.clear();
+		atlases.clear();
+		loading.clear();
+		hits = 0;
+		misses = 0;
+		residentBytes = 0;
+	}
+
+	/**
+	 * @return The number of lookups answered from the cache
+	 */
+	public synchronized int getHits() { return hits; }
+
+	/**
+	 * @return The number of lookups that had to load or build the asset
+	 */
+	public synchronized int getMisses() { return misses; }
+
+	/**
+	 * @return The number of images held
+	 */
+	public synchronized int getImageCount() { return images.size(); }
+
+	/**
+	 * @return The estimated size in bytes of the cached images once decoded
+	 */
+	public synchronized long getResidentBytes() { return residentBytes; }
+
+	/**
+	 * @return A one line summary of the cache, e.g. for printing after a run
+	 */
+	public synchronized String summary()
+	{
+		return String.format("assets  %d images  %d animations  %d atlases  %d hits  %d misses  %.1f KB resident",
+				images.size(), animations.size(), atlases.size(), hits, misses, residentBytes / 1024.0);
+	}
+}
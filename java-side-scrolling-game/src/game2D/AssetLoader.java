@@ -0,0 +1,133 @@
+package game2D;
+
+import java.awt.Image;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AssetLoader reads and decodes images into an AssetCache on a pool of
+ * background threads, so that a game can show a loading screen, or carry
+ * on playing, while its images load. Images are asked for in batches; each
+ * batch reports how much of it has loaded and can be waited on. Batches are
+ * loaded in the order they were asked for, so the images needed first
+ * should be put in the first batch.
+ *
+ * Once a batch is done its images are in the cache, so getImage() returns
+ * them straight away. Asking the cache for an image still loading waits
+ * for it rather than reading the file again.
+ *
+ * @author naomi lambert
+ */
+public class AssetLoader {
+
+	private final AssetCache assets;
+	private final ExecutorService pool;
+
+	/**
+	 * A set of images being loaded together.
+	 */
+	public static final class Batch {
+
+		private final int total;
+		private final AtomicInteger loaded = new AtomicInteger();
+		private final CompletableFuture<Void> done;
+
+		private Batch(AssetCache assets, Collection<String> paths, ExecutorService pool)
+		{
+			total = paths.size();
+			CompletableFuture<?> [] images = new CompletableFuture<?>[total];
+			int i = 0;
+			for (String path: paths)
+			{
+				CompletableFuture<Image> image = assets.preload(path, pool);
+				image.thenRun(loaded::incrementAndGet);
+				images[i++] = image;
+			}
+			done = CompletableFuture.allOf(images);
+		}
+
+		/**
+		 * @return The number of images in the batch
+		 */
+		public int getTotal() { return total; }
+
+		/**
+		 * @return The number of images loaded so far
+		 */
+		public int getLoaded() { return Math.min(loaded.get(), total); }
+
+		/**
+		 * @return The fraction of the batch loaded, from 0 to 1
+		 */
+		public float getProgress()
+		{
+			return total == 0 ? 1 : (float)getLoaded() / total;
+		}
+
+		/**
+		 * @return true once every image in the batch has loaded
+		 */
+		public boolean isDone() { return done.isDone(); }
+
+		/**
+		 * Waits for every image in the batch to load.
+		 */
+		public void join() { done.join(); }
+
+		/**
+		 * @return A future completed when every image in the batch has loaded
+		 */
+		public CompletableFuture<Void> getFuture() { return done; }
+	}
+
+	/**
+	 * Creates a loader with a thread for each processor.
+	 *
+	 * @param assets The cache to load the images into
+	 */
+	public AssetLoader(AssetCache assets)
+	{
+		this(assets, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a loader.
+	 *
+	 * @param assets	The cache to load the images into
+	 * @param threads	The number of images to load at once
+	 */
+	public AssetLoader(AssetCache assets, int threads)
+	{
+		this.assets = assets;
+		AtomicInteger count = new AtomicInteger();
+		pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+			Thread t = new Thread(r, "asset-loader-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Starts loading a batch of images. Images already in the cache, or
+	 * already being loaded, count towards the batch but are not read again.
+	 *
+	 * @param paths The paths of the image files to load
+	 * @return The batch, to follow its progress or wait for it
+	 */
+	public Batch load(Collection<String> paths)
+	{
+		return new Batch(assets, paths, pool);
+	}
+
+	/**
+	 * Stops the loader's threads once the images asked for have loaded.
+	 * Nothing more can be loaded afterwards.
+	 */
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+}
@@ -0,0 +1,451 @@
+package game2D;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * AudioMixer mixes sounds in software. It has a fixed pool of voices,
+ * each playing a decoded sample at its own gain, and sums the active
+ * voices into one buffer a period (a few milliseconds of sound) at a time.
+ * Started with start(), a mixing thread writes each period to a single
+ * SourceDataLine, so however many sounds are playing only one line is
+ * open. If every voice is busy when a sound is played, the voice that
+ * has been playing longest is given the new sound.
+ *
+ * The mixer can also be used offline, without start(): render() mixes
+ * the next frames into an array instead of the line. This needs no audio
+ * device, so the mixing can be measured and checked on any machine.
+ *
+ * As well as the voices, the mixer adds in any Sources, such as streamed
+ * music, which mix themselves into each period.
+ *
+ * All audio is signed 16 bit stereo at 44.1 kHz (FORMAT), held as
+ * interleaved left and right samples. play() can be called from any
+ * thread: it queues the sound, and the voice is started at the beginning
+ * of the next period mixed.
+ *
+ * @author naomi lambert
+ */
+public class AudioMixer {
+
+	public static final AudioFormat FORMAT = new AudioFormat(44100, 16, 2, true, false);
+	public static final int CHANNELS = 2;
+	public static final int DEFAULT_PERIOD = 512;		// Frames mixed at a time, about 12 ms
+
+	private static final int QUEUE_SIZE = 64;			// Most plays waiting to be started
+	private static final int LINE_PERIODS = 4;			// Periods of sound buffered by the line
+	private static final int LATENCY_WINDOW = 256;		// Plays kept in the latency histogram
+
+	private final int periodFrames;
+
+	/**
+	 * Sound made as it is mixed rather than played from a decoded sample,
+	 * e.g. music streamed from a file. A source is called on the thread
+	 * mixing, once per period, and must not block.
+	 */
+	public interface Source {
+
+		/**
+		 * Adds the next 'frames' frames of the source to 'mix'.
+		 *
+		 * @param mix		The interleaved sum of the period so far
+		 * @param frames	The number of frames in the period
+		 * @return false if the source has finished and should be removed
+		 */
+		boolean mix(float [] mix, int frames);
+	}
+
+	private volatile Source [] sources = new Source[0];	// Replaced, not changed, when a source is added or removed
+
+	// The voices, only used by the thread mixing
+	private short [][] voiceData;			// The sample each voice is playing, null if free
+	private int [] voicePos;				// The next sample to mix
+	private float [] voiceGain;
+	private long [] voiceStarted;			// When each voice started, counted in plays
+	private long started;					// Plays started so far, to order the voices
+	private volatile int active;			// Voices playing after the latest period
+
+	private float [] mix;					// The sum of the voices for a period
+	private short [] out;					// A period to write to the line
+	private byte [] bytes;
+
+	// Plays waiting for the next period, guarded by 'lock' as are the counts
+	private final Object lock = new Object();
+	private short [][] pendingData = new short[QUEUE_SIZE][];
+	private float [] pendingGain = new float[QUEUE_SIZE];
+	private long [] pendingTimes = new long[QUEUE_SIZE];
+	private int head;						// Index of the oldest waiting play
+	private int pending;					// Number of waiting plays
+
+	private long plays;						// Plays started
+	private long dropped;					// Plays dropped as the queue was full
+	private long stolen;					// Plays that cut off another voice
+	private FrameTimeHistogram latency = new FrameTimeHistogram(LATENCY_WINDOW);
+
+	private SourceDataLine line;			// The line written to, null if offline or muted
+	private Thread thread;
+	private volatile boolean running;
+
+	/**
+	 * Creates a mixer. It mixes offline until start() is called.
+	 *
+	 * @param voices		The most sounds that can play at once
+	 * @param periodFrames	The number of frames mixed at a time
+	 */
+	public AudioMixer(int voices, int periodFrames)
+	{
+		voices = Math.max(1, voices);
+		this.periodFrames = Math.max(1, periodFrames);
+		voiceData = new short[voices][];
+		voicePos = new int[voices];
+		voiceGain = new float[voices];
+		voiceStarted = new long[voices];
+		mix = new float[this.periodFrames * CHANNELS];
+		out = new short[this.periodFrames * CHANNELS];
+		bytes = new byte[this.periodFrames * FORMAT.getFrameSize()];
+	}
+
+	/**
+	 * Reads the sound in 'path' and converts it to FORMAT.
+	 *
+	 * @param path The WAV (or other Java Sound supported) file to read
+	 * @return The interleaved left and right samples
+	 * @throws IOException if the file could not be read
+	 * @throws UnsupportedAudioFileException if the file is not a sound Java Sound can convert
+	 */
+	public static short [] decode(String path) throws IOException, UnsupportedAudioFileException
+	{
+		try (AudioInputStream in = AudioSystem.getAudioInputStream(new File(path)))
+		{
+			AudioInputStream decoded = in;
+			if (!in.getFormat().matches(FORMAT))
+				decoded = AudioSystem.getAudioInputStream(FORMAT, in);
+			return toSamples(decoded.readAllBytes());
+		}
+	}
+
+	/**
+	 * Converts bytes of 16 bit little endian audio to samples.
+	 */
+	static short [] toSamples(byte [] data)
+	{
+		short [] samples = new short[data.length / 2];
+		for (int i=0; i<samples.length; i++)
+			samples[i] = (short)((data[2*i] & 0xff) | (data[2*i + 1] << 8));
+		return samples;
+	}
+
+	/**
+	 * Plays a decoded sound from the start of the next period.
+	 *
+	 * @param samples	The sound, as returned by decode()
+	 * @param gain		The volume to play it at, 1 for as it is
+	 * @return true if the play was queued, false if too many are waiting
+	 */
+	public boolean play(short [] samples, float gain)
+	{
+		long now = System.nanoTime();
+		synchronized (lock)
+		{
+			if (pending == QUEUE_SIZE)
+			{
+				dropped++;
+				return false;
+			}
+			int tail = (head + pending) % QUEUE_SIZE;
+			pendingData[tail] = samples;
+			pendingGain[tail] = gain;
+			pendingTimes[tail] = now;
+			pending++;
+			return true;
+		}
+	}
+
+	/**
+	 * Mixes the next 'frames' frames into 'dest'. This is what the mixing
+	 * thread does each period; without start() it can be called directly
+	 * to mix offline. Queued plays start at the beginning of each period,
+	 * so the result is the same however it is split into calls.
+	 *
+	 * @param dest		Where to put the interleaved samples, at least frames * CHANNELS long
+	 * @param frames	The number of frames to mix
+	 */
+	public void render(short [] dest, int frames)
+	{
+		for (int done=0; done<frames; )
+		{
+			int n = Math.min(periodFrames, frames - done);
+			mixPeriod(dest, done * CHANNELS, n);
+			done += n;
+		}
+	}
+
+	/**
+	 * Starts any queued plays then sums the voices into 'frames' frames
+	 * of 'dest' from 'offset'.
+	 */
+	private void mixPeriod(short [] dest, int offset, int frames)
+	{
+		startQueued();
+
+		int samples = frames * CHANNELS;
+		Arrays.fill(mix, 0, samples, 0);
+
+		int playing = 0;
+		for (int v=0; v<voiceData.length; v++)
+		{
+			short [] data = voiceData[v];
+			if (data == null) continue;
+
+			int pos = voicePos[v];
+			int n = Math.min(samples, data.length - pos);
+			float gain = voiceGain[v];
+			for (int i=0; i<n; i++)
+				mix[i] += data[pos + i] * gain;
+
+			voicePos[v] = pos + n;
+			if (voicePos[v] >= data.length)
+				voiceData[v] = null;
+			else
+				playing++;
+		}
+		active = playing;
+
+		for (Source source: sources)
+			if (!source.mix(mix, frames)) removeSource(source);
+
+		for (int i=0; i<samples; i++)
+		{
+			float s = mix[i];
+			dest[offset + i] = (short)((s > Short.MAX_VALUE) ? Short.MAX_VALUE : (s < Short.MIN_VALUE) ? Short.MIN_VALUE : s);
+		}
+	}
+
+	/**
+	 * Gives each queued play a voice: a free one if there is one,
+	 * otherwise the one that has been playing longest.
+	 */
+	private void startQueued()
+	{
+		synchronized (lock)
+		{
+			if (pending == 0) return;
+
+			long now = System.nanoTime();
+			for (; pending > 0; pending--)
+			{
+				int voice = 0;
+				for (int v=0; v<voiceData.length; v++)
+				{
+					if (voiceData[v] == null)
+					{
+						voice = v;
+						break;
+					}
+					if (voiceStarted[v] < voiceStarted[voice]) voice = v;
+				}
+				if (voiceData[voice] != null) stolen++;
+
+				voiceData[voice] = pendingData[head];
+				voicePos[voice] = 0;
+				voiceGain[voice] = pendingGain[head];
+				voiceStarted[voice] = started++;
+				latency.record(now - pendingTimes[head]);
+				plays++;
+
+				pendingData[head] = null;
+				head = (head + 1) % QUEUE_SIZE;
+			}
+		}
+	}
+
+	/**
+	 * Adds a source to be mixed from the next period on.
+	 *
+	 * @param source The source to add
+	 */
+	public void addSource(Source source)
+	{
+		synchronized (lock)
+		{
+			Source [] s = Arrays.copyOf(sources, sources.length + 1);
+			s[sources.length] = source;
+			sources = s;
+		}
+	}
+
+	/**
+	 * Removes a source, if it is being mixed.
+	 *
+	 * @param source The source to remove
+	 */
+	public void removeSource(Source source)
+	{
+		synchronized (lock)
+		{
+			for (int i=0; i<sources.length; i++)
+			{
+				if (sources[i] != source) continue;
+
+				Source [] s = new Source[sources.length - 1];
+				System.arraycopy(sources, 0, s, 0, i);
+				System.arraycopy(sources, i + 1, s, i, s.length - i);
+				sources = s;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of sources being mixed
+	 */
+	public int getSourceCount() { return sources.length; }
+
+	/**
+	 * Opens the audio device and starts mixing to it on a new thread. If
+	 * no line can be opened the thread still mixes each period on time,
+	 * but the sound is thrown away.
+	 *
+	 * @return true if the sound will be heard
+	 */
+	public boolean start()
+	{
+		if (thread != null) return line != null;
+
+		try
+		{
+			line = AudioSystem.getSourceDataLine(FORMAT);
+			line.open(FORMAT, bytes.length * LINE_PERIODS);
+			line.start();
+		}
+		catch (LineUnavailableException | IllegalArgumentException | SecurityException e)
+		{
+			System.err.println("No audio device, sound is muted: " + e.getMessage());
+			line = null;
+		}
+
+		running = true;
+		thread = new Thread(this::run, "audio-mixer");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+		return line != null;
+	}
+
+	/**
+	 * The mixing thread. Writing to the line blocks while it is full,
+	 * which keeps the thread in step with the sound being played.
+	 */
+	private void run()
+	{
+		long periodNanos = (long)(periodFrames * 1e9 / FORMAT.getFrameRate());
+		long next = System.nanoTime();
+		while (running)
+		{
+			render(out, periodFrames);
+			if (line != null)
+			{
+				for (int i=0; i<out.length; i++)
+				{
+					bytes[2*i] = (byte)out[i];
+					bytes[2*i + 1] = (byte)(out[i] >> 8);
+				}
+				line.write(bytes, 0, bytes.length);
+			}
+			else
+			{
+				// Keep time without a line, but don't try to catch up
+				// on periods missed while the thread could not run
+				long now = System.nanoTime();
+				next = Math.max(next + periodNanos, now - periodNanos * LINE_PERIODS);
+				LockSupport.parkNanos(next - now);
+			}
+		}
+	}
+
+	/**
+	 * Stops the mixing thread and closes the line.
+	 */
+	public void close()
+	{
+		running = false;
+		if (thread != null)
+		{
+			try { thread.join(); }
+			catch (InterruptedException ex) { }
+			thread = null;
+		}
+		if (line != null)
+		{
+			line.stop();
+			line.close();
+			line = null;
+		}
+	}
+
+	/**
+	 * @return true if mixing to an audio device
+	 */
+	public boolean isOutputting() { return line != null; }
+
+	/**
+	 * @return The number of frames mixed at a time
+	 */
+	public int getPeriodFrames() { return periodFrames; }
+
+	/**
+	 * @return The most sounds that can play at once
+	 */
+	public int getVoices() { return voiceData.length; }
+
+	/**
+	 * @return The number of voices playing after the latest period
+	 */
+	public int getActiveVoices() { return active; }
+
+	/**
+	 * @return The number of plays started
+	 */
+	public long getPlays()
+	{
+		synchronized (lock) { return plays; }
+	}
+
+	/**
+	 * @return The number of plays dropped because too many were waiting
+	 */
+	public long getDropped()
+	{
+		synchronized (lock) { return dropped; }
+	}
+
+	/**
+	 * @return The number of plays that cut off another voice
+	 */
+	public long getStolen()
+	{
+		synchronized (lock) { return stolen; }
+	}
+
+	/**
+	 * Gets a percentile of the time from play() to the voice starting,
+	 * over the most recent plays. With a line open the sound is heard up
+	 * to LINE_PERIODS periods later again, as the line buffers them.
+	 *
+	 * @param fraction The percentile to get, e.g. 0.99
+	 * @return The latency at that percentile in nanoseconds
+	 */
+	public long getLatency(double fraction)
+	{
+		synchronized (lock) { return latency.getPercentile(fraction); }
+	}
+}
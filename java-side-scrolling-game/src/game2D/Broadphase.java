@@ -0,0 +1,81 @@
+package game2D;
+
+import java.util.List;
+
+/**
+ * A Broadphase keeps track of a set of sprites so that the ones that
+ * might be touching can be found without testing every sprite against
+ * every other. Sprites are tested by their bounding boxes: the image
+ * size at their current position.
+ *
+ * Implementations should not allocate once they have grown to fit the
+ * sprites they hold, so that they can be used every tick.
+ *
+ * @author naomi lambert
+ */
+public interface Broadphase {
+
+	/**
+	 * Adds a sprite at its current position.
+	 *
+	 * @param s The sprite to add
+	 */
+	void add(Sprite s);
+
+	/**
+	 * Removes a sprite.
+	 *
+	 * @param s The sprite to remove
+	 * @return true if the sprite was held
+	 */
+	boolean remove(Sprite s);
+
+	/**
+	 * Catches up with the sprites' movement. Call after the sprites
+	 * have moved and before making any queries.
+	 */
+	void update();
+
+	/**
+	 * Removes every sprite.
+	 */
+	void clear();
+
+	/**
+	 * @return The number of sprites held
+	 */
+	int size();
+
+	/**
+	 * Adds to 'out' the sprites that might overlap the given rectangle,
+	 * each once. Every sprite that does overlap it is included, but some
+	 * that do not may be too.
+	 *
+	 * @param x			The left edge of the rectangle in pixels
+	 * @param y			The top edge of the rectangle in pixels
+	 * @param width		The width of the rectangle in pixels
+	 * @param height	The height of the rectangle in pixels
+	 * @param out		The list to add the candidate sprites to
+	 * @return The number of sprites added
+	 */
+	int query(float x, float y, float width, float height, List<Sprite> out);
+
+	/**
+	 * Finds every pair of sprites whose bounding boxes overlap, and adds
+	 * them to 'out' two at a time: out[0] overlaps out[1], out[2] overlaps
+	 * out[3] and so on. Each pair is reported once.
+	 *
+	 * @param out The list to add the pairs to
+	 * @return The number of pairs added
+	 */
+	int findPairs(List<Sprite> out);
+
+	/**
+	 * @return true if the bounding boxes of 'a' and 'b' overlap
+	 */
+	static boolean overlaps(Sprite a, Sprite b)
+	{
+		return a.getMinX() < b.getMaxX() && b.getMinX() < a.getMaxX()
+			&& a.getMinY() < b.getMaxY() && b.getMinY() < a.getMaxY();
+	}
+}
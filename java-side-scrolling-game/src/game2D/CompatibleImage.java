@@ -0,0 +1,182 @@
+package game2D;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+/**
+ * CompatibleImage loads images into the pixel format of the screen, so
+ * that Java2D can copy them straight to it, or keep them in video memory,
+ * rather than converting their pixels every time they are drawn. PNG files
+ * are usually decoded with an alpha channel, or in byte orders the screen
+ * does not use, even when every pixel is opaque.
+ *
+ * Each image is checked for the transparency it actually needs: OPAQUE if
+ * every pixel is opaque, BITMASK if pixels are only ever fully clear or
+ * fully opaque, and TRANSLUCENT otherwise. Opaque images are drawn without
+ * blending at all.
+ *
+ * Without a screen, e.g. when running headless, images are converted to
+ * TYPE_INT_RGB if opaque and TYPE_INT_ARGB otherwise, the formats screens
+ * commonly give and the ones drawn quickest onto an off-screen buffer.
+ *
+ * @author naomi lambert
+ */
+public final class CompatibleImage {
+
+	private CompatibleImage() { }
+
+	/**
+	 * @return The configuration of the default screen, or null if there is no screen
+	 */
+	public static GraphicsConfiguration getConfiguration()
+	{
+		if (GraphicsEnvironment.isHeadless()) return null;
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+	}
+
+	/**
+	 * Creates an empty image in the screen's format.
+	 *
+	 * @param width			The width of the image
+	 * @param height		The height of the image
+	 * @param transparency	Transparency.OPAQUE, BITMASK or TRANSLUCENT
+	 * @return The new image
+	 */
+	public static BufferedImage create(int width, int height, int transparency)
+	{
+		GraphicsConfiguration gc = getConfiguration();
+		if (gc != null) return gc.createCompatibleImage(width, height, transparency);
+		return new BufferedImage(width, height, headlessType(transparency));
+	}
+
+	private static int headlessType(int transparency)
+	{
+		return (transparency == Transparency.OPAQUE) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+	}
+
+	/**
+	 * Reads an image and converts it to the screen's format. The image is
+	 * read with ImageIO, or with ImageIcon if ImageIO cannot read it. If
+	 * the file cannot be read the returned image will have a width and
+	 * height of -1, as with ImageIcon.
+	 *
+	 * @param path The path to the image file
+	 * @return The image
+	 */
+	public static Image load(String path)
+	{
+		Image image = null;
+		try
+		{
+			image = ImageIO.read(new File(path));
+		}
+		catch (IOException e) { }
+		if (image == null) image = new ImageIcon(path).getImage();
+		return convert(image);
+	}
+
+	/**
+	 * Converts an image to the screen's format, with the least transparency
+	 * its pixels need. An image already in that format is returned as it is.
+	 *
+	 * @param image A loaded image
+	 * @return The converted image, or 'image' if it is already compatible or not loaded
+	 */
+	public static Image convert(Image image)
+	{
+		if (image instanceof BufferedImage) return convert((BufferedImage)image);
+
+		int w = image.getWidth(null), h = image.getHeight(null);
+		if (w <= 0 || h <= 0) return image;
+		return copy(image, 0, 0, w, h, getTransparency(image));
+	}
+
+	/**
+	 * Converts an image to the screen's format, with the least transparency
+	 * its pixels need. An image already in that format is returned as it is.
+	 *
+	 * @param image The image to convert
+	 * @return The converted image, or 'image' if it is already compatible
+	 */
+	public static BufferedImage convert(BufferedImage image)
+	{
+		int transparency = getTransparency(image);
+		if (isCompatible(image, transparency)) return image;
+		return copy(image, 0, 0, image.getWidth(), image.getHeight(), transparency);
+	}
+
+	/**
+	 * Copies part of an image into a new image in the screen's format.
+	 * The pixels are copied as they are, not blended.
+	 *
+	 * @param image			The image to copy from
+	 * @param x				The left of the part to copy
+	 * @param y				The top of the part to copy
+	 * @param width			The width of the part to copy
+	 * @param height		The height of the part to copy
+	 * @param transparency	The transparency of the new image
+	 * @return The copy
+	 */
+	public static BufferedImage copy(Image image, int x, int y, int width, int height, int transparency)
+	{
+		BufferedImage copy = create(width, height, transparency);
+		Graphics2D g = copy.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.drawImage(image, 0, 0, width, height, x, y, x + width, y + height, null);
+		g.dispose();
+		return copy;
+	}
+
+	/**
+	 * Finds the least transparency an image's pixels need.
+	 *
+	 * @param image A loaded image
+	 * @return Transparency.OPAQUE, BITMASK or TRANSLUCENT
+	 */
+	public static int getTransparency(Image image)
+	{
+		BufferedImage b;
+		if (image instanceof BufferedImage)
+			b = (BufferedImage)image;
+		else
+			b = copy(image, 0, 0, image.getWidth(null), image.getHeight(null), Transparency.TRANSLUCENT);
+
+		if (b.getTransparency() == Transparency.OPAQUE) return Transparency.OPAQUE;
+
+		int w = b.getWidth();
+		int [] row = new int[w];
+		boolean clear = false;
+		for (int y=0; y<b.getHeight(); y++)
+		{
+			b.getRGB(0, y, w, 1, row, 0, w);
+			for (int argb: row)
+			{
+				int alpha = argb >>> 24;
+				if (alpha == 0)
+					clear = true;
+				else if (alpha != 255)
+					return Transparency.TRANSLUCENT;
+			}
+		}
+		return clear ? Transparency.BITMASK : Transparency.OPAQUE;
+	}
+
+	private static boolean isCompatible(BufferedImage image, int transparency)
+	{
+		if (image.getType() == BufferedImage.TYPE_CUSTOM) return false;
+
+		GraphicsConfiguration gc = getConfiguration();
+		if (gc != null) return image.getColorModel().equals(gc.getColorModel(transparency));
+		return image.getType() == headlessType(transparency);
+	}
+}
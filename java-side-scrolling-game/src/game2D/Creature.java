@@ -42,6 +42,11 @@ public class Creature extends Sprite {
 	private boolean onGround;
 	private int upCount;
 
+	// size of the box used for collisions with the tile map, taken from the
+	// first idle frame so that it does not change as the animation plays
+	private int boxWidth;
+	private int boxHeight;
+
 
 
 	//useful constants
@@ -61,6 +66,8 @@ public class Creature extends Sprite {
 
 		this.onGround = false;
 		this.upCount = 0;
+		this.boxWidth = getWidth();
+		this.boxHeight = getHeight();
 
 		state = STATE_NORMAL;
 	}
@@ -79,11 +86,27 @@ public class Creature extends Sprite {
 
 		this.onGround = false;
 		this.upCount = 0;
+		this.boxWidth = getWidth();
+		this.boxHeight = getHeight();
 
 		state = STATE_NORMAL;
 	}
 
 
+	/**
+	 * @return the width of the box used for collisions with the tile map
+	 */
+	public int getBoxWidth() {
+		return boxWidth;
+	}
+
+	/**
+	 * @return the height of the box used for collisions with the tile map
+	 */
+	public int getBoxHeight() {
+		return boxHeight;
+	}
+
 	public int getUpCount() {
 		return upCount;
 	}
@@ -181,9 +204,10 @@ public class Creature extends Sprite {
 			newAnim = dyingRight;
 		}
 
-		// update the Animation
+		// update the Animation (if the creature is in an AnimationSystem
+		// the system advances it instead, and anim.update does nothing)
 		if (anim != newAnim) {
-			anim = newAnim;
+			setAnimation(newAnim);
 			anim.start();
 		}
 		else {
@@ -241,27 +265,7 @@ public class Creature extends Sprite {
 	 * @return an array list containing corner points and mid points of sprite
 	 */
 	public Point[] getCorners() {
-		Point[] corners = new Point[5];
-
-		int sX = (int)this.getX();
-		int sY = (int)this.getY();
-
-		Point topLeft = new Point(sX+5, sY);
-		//Point midTop = new Point(sX + this.getWidth()/2, sY);
-		Point topRight = new Point(sX+5 + this.getWidth()-5, sY);
-		Point bottomRight = new Point(sX+5 + this.getWidth()-5, sY + this.getHeight());
-		Point midBottom = new Point(sX + this.getWidth()/2, sY + this.getHeight());
-		Point bottomLeft = new Point(sX+5, sY + this.getHeight());
-
-		corners[0] = topLeft;
-
-		corners[1] = topRight;
-		corners[2] = bottomRight;
-		corners[3] = bottomLeft;
-		corners[4] = midBottom;
-		//corners[5] = midTop;
-
-		return corners;
+		return toPoints(getCorners(new float[10]));
 	}
 	
 	/**
@@ -296,20 +300,7 @@ public class Creature extends Sprite {
 	 * @return arraylist containing sprite left and right midpoints
 	 */
 	public Point[] getHorizontalPoints() {
-		Point[] corners = new Point[2];
-
-		int sX = (int)this.getX();
-		int sY = (int)this.getY();
-
-		Point midLeft = new Point(sX, sY + this.getHeight()/2);
-		Point midRight = new Point(sX + this.getWidth(), sY + this.getHeight()/2);
-
-
-		corners[0] = midRight;
-		corners[1] = midLeft;
-
-
-		return corners;
+		return toPoints(getHorizontalPoints(new float[4]));
 	}
 
 	/**
@@ -317,19 +308,72 @@ public class Creature extends Sprite {
 	 * @return arraylist containing sprite top and bottom midpoints
 	 */
 	public Point[] getVerticalPoints() {
-		Point[] corners = new Point[2];
+		return toPoints(getVerticalPoints(new float[4]));
+	}
 
+	/**
+	 * Turns x,y pairs written by the float[] overloads into points.
+	 * The coordinates are already whole pixels.
+	 */
+	private static Point[] toPoints(float[] xy) {
+		Point[] points = new Point[xy.length / 2];
+		for (int i = 0; i < points.length; i++)
+			points[i] = new Point((int)xy[2*i], (int)xy[2*i + 1]);
+		return points;
+	}
+
+	/**
+	 * Writes the same points as getCorners() into 'out' as x,y pairs:
+	 * top left, top right, bottom right, bottom left and mid bottom.
+	 * Nothing is allocated, so this is safe to call every tick.
+	 * 
+	 * @param out An array of at least 10 floats to fill in
+	 * @return 'out'
+	 */
+	public float[] getCorners(float[] out) {
 		int sX = (int)this.getX();
 		int sY = (int)this.getY();
+		int w = this.getWidth();
+		int h = this.getHeight();
+
+		out[0] = sX+5;			out[1] = sY;
+		out[2] = sX + w;		out[3] = sY;
+		out[4] = sX + w;		out[5] = sY + h;
+		out[6] = sX+5;			out[7] = sY + h;
+		out[8] = sX + w/2;		out[9] = sY + h;
+		return out;
+	}
 
-		Point midTop = new Point(sX+this.getWidth()/2, sY);
-		Point midBottom = new Point(sX+this.getWidth()/2, sY + this.getHeight());
+	/**
+	 * Writes the same points as getHorizontalPoints() into 'out' as x,y
+	 * pairs: mid right then mid left. Nothing is allocated.
+	 * 
+	 * @param out An array of at least 4 floats to fill in
+	 * @return 'out'
+	 */
+	public float[] getHorizontalPoints(float[] out) {
+		int sX = (int)this.getX();
+		int sY = (int)this.getY();
 
-		corners[0] = midTop;
+		out[0] = sX + this.getWidth();	out[1] = sY + this.getHeight()/2;
+		out[2] = sX;					out[3] = sY + this.getHeight()/2;
+		return out;
+	}
 
-		corners[1] = midBottom;
+	/**
+	 * Writes the same points as getVerticalPoints() into 'out' as x,y
+	 * pairs: mid top then mid bottom. Nothing is allocated.
+	 * 
+	 * @param out An array of at least 4 floats to fill in
+	 * @return 'out'
+	 */
+	public float[] getVerticalPoints(float[] out) {
+		int sX = (int)this.getX();
+		int sY = (int)this.getY();
 
-		return corners;
+		out[0] = sX + this.getWidth()/2;	out[1] = sY;
+		out[2] = sX + this.getWidth()/2;	out[3] = sY + this.getHeight();
+		return out;
 	}
 
 
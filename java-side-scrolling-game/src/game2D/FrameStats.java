@@ -0,0 +1,125 @@
+package game2D;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+/**
+ * FrameStats keeps a rolling FrameTimeHistogram for each phase of a frame:
+ * the time spent in update(), drawing, presenting the result to the screen
+ * and sleeping, plus the length of the whole frame. Unlike an average frame
+ * rate, the percentiles and maximum over the recent window show up short
+ * hitches as soon as they happen.
+ *
+ * @author naomi lambert
+ */
+public class FrameStats {
+
+	// Phases of a frame
+	public static final int UPDATE = 0;
+	public static final int DRAW = 1;
+	public static final int PRESENT = 2;
+	public static final int SLEEP = 3;
+	public static final int FRAME = 4;
+
+	private static final int PHASES = 5;
+	private static final String [] NAMES = { "update", "draw", "present", "sleep", "frame" };
+
+	private FrameTimeHistogram [] phases = new FrameTimeHistogram[PHASES];
+	private long frames;	// Total frames recorded
+
+	/**
+	 * Create a set of histograms covering the most recent 'windowSize' frames.
+	 *
+	 * @param windowSize The number of frames kept in the sliding window
+	 */
+	public FrameStats(int windowSize)
+	{
+		for (int p=0; p<PHASES; p++)
+			phases[p] = new FrameTimeHistogram(windowSize);
+	}
+
+	/**
+	 * Record the phase timings of one frame. The frame length is taken to
+	 * be the sum of the phases.
+	 *
+	 * @param update	Nanoseconds spent in update()
+	 * @param draw		Nanoseconds spent in draw()
+	 * @param present	Nanoseconds spent showing the drawn frame
+	 * @param sleep		Nanoseconds spent sleeping
+	 */
+	public void record(long update, long draw, long present, long sleep)
+	{
+		phases[UPDATE].record(update);
+		phases[DRAW].record(draw);
+		phases[PRESENT].record(present);
+		phases[SLEEP].record(sleep);
+		phases[FRAME].record(update + draw + present + sleep);
+		frames++;
+	}
+
+	/**
+	 * @param phase One of UPDATE, DRAW, PRESENT, SLEEP or FRAME
+	 * @return The histogram for the given phase
+	 */
+	public FrameTimeHistogram getHistogram(int phase) { return phases[phase]; }
+
+	/**
+	 * @return The total number of frames recorded
+	 */
+	public long getFrames() { return frames; }
+
+	/**
+	 * Remove all recorded frames.
+	 */
+	public void clear()
+	{
+		for (int p=0; p<PHASES; p++)
+			phases[p].clear();
+		frames = 0;
+	}
+
+	/**
+	 * Gets a one line summary of a phase, in milliseconds.
+	 *
+	 * @param phase One of UPDATE, DRAW, PRESENT, SLEEP or FRAME
+	 * @return A summary giving the p50, p95, p99 and max of the phase
+	 */
+	public String summary(int phase)
+	{
+		FrameTimeHistogram h = phases[phase];
+		return String.format("%-7s p50 %6.2f  p95 %6.2f  p99 %6.2f  max %6.2f ms",
+				NAMES[phase], h.getPercentile(0.50) / 1e6, h.getPercentile(0.95) / 1e6,
+				h.getPercentile(0.99) / 1e6, h.getMax() / 1e6);
+	}
+
+	/**
+	 * Gets a summary of all of the phases, one per line.
+	 */
+	public String toString()
+	{
+		StringBuilder s = new StringBuilder();
+		for (int p=0; p<PHASES; p++)
+			s.append(summary(p)).append('\n');
+		return s.toString();
+	}
+
+	/**
+	 * Draws a summary of all of the phases as a text overlay with its top
+	 * left corner at 'x,y'.
+	 *
+	 * @param g The graphics device to draw to
+	 * @param x The x position of the overlay in pixels
+	 * @param y The y position of the overlay in pixels
+	 */
+	public void drawOverlay(Graphics2D g, int x, int y)
+	{
+		int lineHeight = g.getFontMetrics().getHeight();
+
+		g.setColor(new Color(0, 0, 0, 160));
+		g.fillRect(x, y, 380, lineHeight * PHASES + 8);
+
+		g.setColor(Color.white);
+		for (int p=0; p<PHASES; p++)
+			g.drawString(summary(p), x + 4, y + 4 + lineHeight * (p+1) - 3);
+	}
+}
@@ -0,0 +1,165 @@
+package game2D;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of durations (in nanoseconds) over a sliding window of the
+ * most recent samples. Values are counted in log-linear buckets in the
+ * style of an HDR histogram: every power of two range is split into 32
+ * equal sub-buckets, so any reported percentile is within about 3% of
+ * the true value whatever its magnitude. Recording a sample is constant
+ * time and never allocates, so it can be done every frame.
+ *
+ * The histogram is not thread safe and should be read on the thread that
+ * records into it.
+ *
+ * @author naomi lambert
+ */
+public class FrameTimeHistogram {
+
+	private static final int SUB_BITS = 5;					// log2 of sub-buckets per power of two
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+	private int [] counts = new int[BUCKETS];	// Samples in the window per bucket
+	private long [] window;						// The samples in the window, oldest overwritten first
+	private int next;							// Where the next sample will be stored in the window
+	private int size;							// Number of samples currently in the window
+	private long total;							// Sum of the samples in the window
+
+	/**
+	 * Create a histogram covering the most recent 'windowSize' samples.
+	 *
+	 * @param windowSize The number of samples kept in the sliding window
+	 */
+	public FrameTimeHistogram(int windowSize)
+	{
+		window = new long[Math.max(1, windowSize)];
+	}
+
+	/**
+	 * Add a sample, dropping the oldest one if the window is full.
+	 *
+	 * @param nanos The duration to record in nanoseconds
+	 */
+	public void record(long nanos)
+	{
+		if (nanos < 0) nanos = 0;
+
+		if (size == window.length)
+		{
+			long old = window[next];
+			counts[bucket(old)]--;
+			total -= old;
+		}
+		else
+			size++;
+
+		window[next] = nanos;
+		counts[bucket(nanos)]++;
+		total += nanos;
+
+		next++;
+		if (next == window.length) next = 0;
+	}
+
+	/**
+	 * Remove all samples.
+	 */
+	public void clear()
+	{
+		Arrays.fill(counts, 0);
+		size = 0;
+		next = 0;
+		total = 0;
+	}
+
+	/**
+	 * @return The number of samples in the window
+	 */
+	public int getCount() { return size; }
+
+	/**
+	 * @return The maximum number of samples kept in the window
+	 */
+	public int getWindowSize() { return window.length; }
+
+	/**
+	 * @return The most recently recorded sample, or 0 if there are none
+	 */
+	public long getLast()
+	{
+		if (size == 0) return 0;
+		return window[next == 0 ? window.length - 1 : next - 1];
+	}
+
+	/**
+	 * @return The mean of the samples in the window in nanoseconds
+	 */
+	public long getMean()
+	{
+		if (size == 0) return 0;
+		return total / size;
+	}
+
+	/**
+	 * @return The largest sample in the window in nanoseconds
+	 */
+	public long getMax()
+	{
+		long max = 0;
+		for (int i=0; i<size; i++)
+			if (window[i] > max) max = window[i];
+		return max;
+	}
+
+	/**
+	 * Gets the value below which the given fraction of the samples in the
+	 * window fall, e.g. 0.99 for the 99th percentile. The value returned is
+	 * the top of the bucket the percentile lies in, capped at the maximum.
+	 *
+	 * @param fraction The percentile wanted as a fraction between 0 and 1
+	 * @return The percentile in nanoseconds, or 0 if there are no samples
+	 */
+	public long getPercentile(double fraction)
+	{
+		if (size == 0) return 0;
+
+		long wanted = (long)Math.ceil(fraction * size);
+		if (wanted < 1) wanted = 1;
+		if (wanted >= size) return getMax();
+
+		long seen = 0;
+		for (int b=0; b<BUCKETS; b++)
+		{
+			seen += counts[b];
+			if (seen >= wanted) return Math.min(highestValueIn(b), getMax());
+		}
+		return getMax();
+	}
+
+	/**
+	 * Works out which bucket a value is counted in. Values below
+	 * 2*SUB_COUNT have a bucket each, after that each power of two range
+	 * is split into SUB_COUNT buckets.
+	 */
+	private static int bucket(long value)
+	{
+		if (value < (SUB_COUNT << 1)) return (int)value;
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return (shift << SUB_BITS) + (int)(value >>> shift);
+	}
+
+	/**
+	 * @return The largest value that would be counted in bucket 'b'
+	 */
+	private static long highestValueIn(int b)
+	{
+		if (b < (SUB_COUNT << 1)) return b;
+
+		int shift = (b >>> SUB_BITS) - 1;
+		long mantissa = (b & (SUB_COUNT - 1)) + SUB_COUNT;
+		return ((mantissa + 1) << shift) - 1;
+	}
+}
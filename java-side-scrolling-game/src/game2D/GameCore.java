@@ -5,7 +5,7 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseWheelListener;
-import java.awt.image.BufferedImage;
+import java.awt.image.BufferStrategy;
 
 import javax.swing.*;
 
@@ -15,27 +15,51 @@ import javax.swing.*;
  * 
  * Core Game class that implements default game loop. Subclasses should
  * implement the draw() method and override the update method.
+ * 
+ * The game can also be driven without any window by a HeadlessRunner,
+ * in which case no JFrame or other display resource is ever created.
 */
-public abstract class GameCore extends JFrame implements KeyListener, MouseListener, MouseWheelListener {
-
-	private static final long serialVersionUID = 1L;
+public abstract class GameCore implements KeyListener, MouseListener, MouseWheelListener {
 
 	protected static final int FONT_SIZE = 12;
     
     private ScreenManager screen;		// A screen manager to use
     private DisplayMode displayMode;	// The required display mode
 
-    private boolean isRunning;			// true if the game loop should continue
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long VARIABLE_SLEEP = 10;	// Nap between frames (ms) in variable timestep mode
+    private static final int FRAME_STATS_WINDOW = 600;	// Frames covered by the frame time histograms
+
+    private volatile boolean isRunning;	// true if the game loop should continue
     private boolean fullScreen;			// true if the game is in full screen mode
-    private	long startTime;				// The time the game started
-    private long currTime;				// The current time
-    private long elapsedTime;			// Elapsed time since previous check
+    private	long startTime;				// The time the game started (ns)
+    private long currTime;				// The current time (ns)
+    private long elapsedTime;			// Elapsed time since previous check (ms)
     
     private long frames;				// Used to calculate frames per second (FPS)
+    
+    private boolean fixedTimestep;		// true to simulate in fixed size ticks
+    private long tickMillis = 10;		// Length of one simulation tick in milliseconds
+    private int maxCatchUpTicks = 5;	// Most ticks simulated before a frame is drawn
+    private long ticks;					// Number of simulation ticks run so far
+    private long skippedTicks;			// Ticks dropped because the simulation fell too far behind
+    
+    private FrameStats frameStats = new FrameStats(FRAME_STATS_WINDOW);	// Recent per phase frame timings
+    private volatile long updateNanos;	// Time taken by the last batch of updates
+    private long drawNanos;				// Time taken by the last call to draw()
+    private long presentNanos;			// Time taken to show the last drawn frame
     private Window win;					// Window object used to handle the display
+    private JFrame frame;				// The window used in windowed mode
     
-    private BufferedImage buffer=null;	// buffer is used as a buffered image for drawing offscreen
-    private Graphics2D bg=null;    		// The virtual Graphics2D device associated with the above image
+    private boolean headless;			// true if driven by a HeadlessRunner with no display
+    private int headlessWidth;			// Screen width in pixels when headless
+    private int headlessHeight;			// Screen height in pixels when headless
+    
+    private boolean syncDisplay = true;	// true to sync the display after each frame is shown
+    
+    private boolean threaded;			// true to simulate and draw on separate threads
+    private TripleBuffer<SceneSnapshot> snapshots;	// Hands snapshots from the simulation to the render thread
     
     
     /**
@@ -101,18 +125,43 @@ public abstract class GameCore extends JFrame implements KeyListener, MouseListe
     	}
     	else
     	{
-    		win = this;
+    		frame = new JFrame();
+    		frame.setIgnoreRepaint(true);
+    		win = frame;
             win.setSize(xres,yres);
     	}
 
         setVisible(true);
         
+        // Full screen windows are given a BufferStrategy by the ScreenManager
+        if (!fullScreen)
+        	ScreenManager.createBufferStrategy(frame, 2);
+        
         win.addMouseListener(this);
         win.addKeyListener(this);
         win.addMouseWheelListener(this);
         win.setFont(new Font("Dialog", Font.PLAIN, FONT_SIZE));
     }
     
+    /**
+     * Initialisation used by a HeadlessRunner. No window is created and
+     * getWidth()/getHeight() report the given size instead.
+     * 
+     * @param xres	Width in pixels of the virtual game screen
+     * @param yres	Height in pixels of the virtual game screen
+     */
+    void initHeadless(int xres, int yres) {
+    	headless = true;
+    	fullScreen = false;
+    	headlessWidth = xres;
+    	headlessHeight = yres;
+    }
+    
+    /**
+     * @return True if the game is being run without a display
+     */
+    public boolean isHeadless() { return headless; }
+    
     /**
      * Shows and hides the main game window
      * 
@@ -121,9 +170,11 @@ public abstract class GameCore extends JFrame implements KeyListener, MouseListe
      */
     public void setVisible(boolean show)
     {
+    	if (headless) return;
+    	
     	if (!fullScreen) 
     	{
-    		super.setVisible(show);
+    		frame.setVisible(show);
     		return;
     	}
 
@@ -140,90 +191,391 @@ public abstract class GameCore extends JFrame implements KeyListener, MouseListe
     }
 
     /**
-     * Loads an image with the given 'fileName'
+     * Loads an image with the given 'fileName', converted to the
+     * screen's format so that it is quick to draw
      * 
      * @param fileName The file path to the image file that should be loaded 
      * @return A reference to the Image object that was loaded
      */
     public Image loadImage(String fileName) 
     { 
-    	return new ImageIcon(fileName).getImage(); 
+    	return CompatibleImage.load(fileName); 
     }
 
+    /**
+     * Selects between a variable timestep, where update() is passed the
+     * time since the previous frame, and a fixed timestep, where update()
+     * is always passed the same tick length and draw() receives an
+     * interpolation value between the last two ticks.
+     * 
+     * @param fixed True to use a fixed simulation timestep
+     */
+    public void setFixedTimestep(boolean fixed) { fixedTimestep = fixed; }
+    
+    /**
+     * @return True if the game loop is using a fixed simulation timestep
+     */
+    public boolean isFixedTimestep() { return fixedTimestep; }
+    
+    /**
+     * Sets the number of simulation ticks per second used in fixed timestep
+     * mode. Ticks are a whole number of milliseconds long, so the rate
+     * is rounded to the nearest tick length, e.g. 60 gives 17ms ticks.
+     * 
+     * @param ticksPerSecond The number of simulation ticks per second
+     */
+    public void setTickRate(int ticksPerSecond)
+    {
+    	if (ticksPerSecond <= 0) return;
+    	tickMillis = Math.max(1, Math.round(1000.0f / ticksPerSecond));
+    }
+    
+    /**
+     * @return The length of a simulation tick in milliseconds
+     */
+    public long getTickMillis() { return tickMillis; }
+    
+    /**
+     * Sets the most ticks that will be simulated to catch up before the
+     * next frame is drawn. If the simulation is still behind after this
+     * many ticks, the remaining backlog is dropped so the game slows down
+     * rather than spiralling further behind.
+     * 
+     * @param max The maximum number of catch up ticks per frame
+     */
+    public void setMaxCatchUpTicks(int max) { maxCatchUpTicks = Math.max(1, max); }
+    
+    /**
+     * @return The number of simulation ticks run so far
+     */
+    public long getTicks() { return ticks; }
+    
+    /**
+     * @return The number of ticks dropped because the simulation fell behind
+     */
+    public long getSkippedTicks() { return skippedTicks; }
+    
+    /**
+     * Chooses whether the simulation runs on its own thread. When it does,
+     * update() is called in fixed ticks (as in fixed timestep mode) on a
+     * simulation thread, which calls writeSnapshot() after each batch of
+     * ticks. The game loop thread then only draws, using
+     * draw(Graphics2D, SceneSnapshot, float) with the latest snapshot, so a
+     * slow frame no longer holds up the simulation. Subclasses that use
+     * this must override writeSnapshot() and, if they draw more than
+     * sprites, the snapshot draw method and createSnapshot().
+     * 
+     * @param threads True to simulate and draw on separate threads
+     */
+    public void setThreadedRendering(boolean threads) { threaded = threads; }
+    
+    /**
+     * @return True if the simulation and drawing run on separate threads
+     */
+    public boolean isThreadedRendering() { return threaded; }
+
     /**
      *  Runs through the game loop until stop() is called. 
      *  
      *  This method will call your update() method followed by your draw()
      *  method to display the updated game state. It implements double buffering
-     *  for both full screen and windowed mode.
+     *  for both full screen and windowed mode by page flipping (or blitting,
+     *  where flipping is unavailable) the window's BufferStrategy.
      */
     public void gameLoop() {
-        startTime = System.currentTimeMillis();
+        startTime = System.nanoTime();
         currTime = startTime;
         frames = 1;		// Keep a note of frames for performance measure
+        ticks = 0;
+        skippedTicks = 0;
+        frameStats.clear();
 
-        Graphics2D g;
         isRunning = true;
         
         
-        // Create our own buffer
-        buffer = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
-        bg = (Graphics2D)buffer.createGraphics();
-        bg.setClip(0, 0, getWidth(), getHeight());
+        if (threaded)
+        	threadedLoop();
+        else if (fixedTimestep)
+        	fixedLoop();
+        else
+        	variableLoop();
         
+        System.exit(0);
+    }
+    
+    /**
+     * Game loop that passes the real time elapsed since the previous
+     * frame to update() and then draws the result.
+     */
+    private void variableLoop()
+    {
+    	long lastUpdate = currTime;
+    	
         while (isRunning) {
-            elapsedTime = System.currentTimeMillis() - currTime;
-            currTime += elapsedTime;
+        	currTime = System.nanoTime();
+            elapsedTime = (currTime - lastUpdate) / NANOS_PER_MILLI;
+            // Carry any part millisecond over to the next frame
+            lastUpdate += elapsedTime * NANOS_PER_MILLI;
 
             // Call the overridden update method
             update(elapsedTime);
-
-	        // Get the current graphics device 	            
-            //g = (Graphics2D)win.getGraphics();
-            g = (Graphics2D)win.getGraphics(); 
+            ticks++;
+            updateNanos = System.nanoTime() - currTime;
             
-	        if (g != null)
-	        {
- 	            if (fullScreen)
-	            {
-	            	// Set the clipping (drawable) region to be the screen bounds
-	            	g.setClip(0, 0, getWidth(), getHeight());
-		            draw(g);
-	            	screen.update();
-	            	g.dispose();
-	            }
-	            else
-	            {
-	            	draw(bg);
-	            	g.drawImage(buffer,null,0,0);
- 	            }
-            }
-            else
-            {
-            	System.err.println("Null reference for graphics");
-            	break;
-            }
+            if (!render(null, 1.0f)) break;
             
             frames++;
 
             // take a nap
+            long sleepStart = System.nanoTime();
             try {
-                Thread.sleep(10);
+                Thread.sleep(VARIABLE_SLEEP);
             }
             catch (InterruptedException ex) { }
+            
+            frameStats.record(updateNanos, drawNanos, presentNanos, System.nanoTime() - sleepStart);
         }
-        System.exit(0);
     }
+    
+    /**
+     * Game loop that advances the simulation in ticks of exactly
+     * tickMillis, drawing once per pass with the fraction of a tick
+     * left over passed to draw() for interpolation. When drawing is slow,
+     * several ticks are run between frames (skipping frames) up to
+     * maxCatchUpTicks.
+     */
+    private void fixedLoop()
+    {
+    	long tickNanos = tickMillis * NANOS_PER_MILLI;
+    	long previous = currTime;
+    	long accumulator = 0;
+    	
+    	while (isRunning) {
+    		currTime = System.nanoTime();
+    		accumulator += currTime - previous;
+    		previous = currTime;
+    		
+    		int caughtUp = 0;
+    		while (accumulator >= tickNanos && caughtUp < maxCatchUpTicks)
+    		{
+    			update(tickMillis);
+    			accumulator -= tickNanos;
+    			ticks++;
+    			caughtUp++;
+    		}
+    		
+    		// Still behind, so give up on the backlog rather than
+    		// spending ever longer catching up
+    		if (accumulator >= tickNanos)
+    		{
+    			skippedTicks += accumulator / tickNanos;
+    			accumulator %= tickNanos;
+    		}
+    		
+    		updateNanos = System.nanoTime() - currTime;
+    		
+    		if (!render(null, (float)accumulator / tickNanos)) break;
+    		
+    		frames++;
+    		
+    		// Sleep until the next tick is due
+    		long sleepStart = System.nanoTime();
+    		long wait = tickNanos - accumulator - (sleepStart - previous);
+    		if (wait > 0)
+    		{
+    			try {
+    				Thread.sleep(wait / NANOS_PER_MILLI, (int)(wait % NANOS_PER_MILLI));
+    			}
+    			catch (InterruptedException ex) { }
+    		}
+    		
+    		frameStats.record(updateNanos, drawNanos, presentNanos, System.nanoTime() - sleepStart);
+    	}
+    }
+    
+    /**
+     * Game loop that runs the simulation on a separate thread, in fixed
+     * ticks, while this thread draws the most recent snapshot of the game
+     * once per tick length. Drawing interpolates between the previous and
+     * current positions in the snapshot according to how long ago it was
+     * published.
+     */
+    private void threadedLoop()
+    {
+    	long tickNanos = tickMillis * NANOS_PER_MILLI;
+    	
+    	snapshots = new TripleBuffer<SceneSnapshot>(createSnapshot(), createSnapshot(), createSnapshot());
+    	publishSnapshot();
+    	
+    	Thread simulation = new Thread(new Runnable() {
+    		public void run() { simulationLoop(); }
+    	}, "simulation");
+    	simulation.start();
+    	
+    	while (isRunning) {
+    		currTime = System.nanoTime();
+    		SceneSnapshot snapshot = snapshots.getLatest();
+    		float alpha = Math.min(1.0f, (float)(currTime - snapshot.getTime()) / tickNanos);
+    		
+    		if (!render(snapshot, alpha)) break;
+    		
+    		frames++;
+    		
+    		long sleepStart = System.nanoTime();
+    		long wait = tickNanos - (sleepStart - currTime);
+    		if (wait > 0)
+    		{
+    			try {
+    				Thread.sleep(wait / NANOS_PER_MILLI, (int)(wait % NANOS_PER_MILLI));
+    			}
+    			catch (InterruptedException ex) { }
+    		}
+    		
+    		frameStats.record(updateNanos, drawNanos, presentNanos, System.nanoTime() - sleepStart);
+    	}
+    	
+    	isRunning = false;
+    	try {
+    		simulation.join();
+    	}
+    	catch (InterruptedException ex) { }
+    }
+    
+    /**
+     * Runs on the simulation thread in threaded mode. Ticks are run
+     * exactly as in fixedLoop(), but rather than drawing, a snapshot is
+     * published after each batch of ticks.
+     */
+    private void simulationLoop()
+    {
+    	long tickNanos = tickMillis * NANOS_PER_MILLI;
+    	long previous = System.nanoTime();
+    	long accumulator = 0;
+    	
+    	while (isRunning) {
+    		long now = System.nanoTime();
+    		accumulator += now - previous;
+    		previous = now;
+    		
+    		int caughtUp = 0;
+    		while (accumulator >= tickNanos && caughtUp < maxCatchUpTicks)
+    		{
+    			update(tickMillis);
+    			accumulator -= tickNanos;
+    			ticks++;
+    			caughtUp++;
+    		}
+    		
+    		if (accumulator >= tickNanos)
+    		{
+    			skippedTicks += accumulator / tickNanos;
+    			accumulator %= tickNanos;
+    		}
+    		
+    		if (caughtUp > 0)
+    		{
+    			updateNanos = System.nanoTime() - now;
+    			publishSnapshot();
+    		}
+    		
+    		long wait = tickNanos - accumulator - (System.nanoTime() - previous);
+    		if (wait > 0)
+    		{
+    			try {
+    				Thread.sleep(wait / NANOS_PER_MILLI, (int)(wait % NANOS_PER_MILLI));
+    			}
+    			catch (InterruptedException ex) { }
+    		}
+    	}
+    }
+    
+    /**
+     * Fills in the producer's snapshot and hands it to the render thread.
+     */
+    private void publishSnapshot()
+    {
+    	SceneSnapshot snapshot = snapshots.getWriteBuffer();
+    	snapshot.clear();
+    	writeSnapshot(snapshot);
+    	snapshot.setTaken(ticks, System.nanoTime());
+    	snapshots.publish();
+    }
+    
+    /**
+     * Draws the current game state into the window's back buffer and then
+     * shows it. If the buffer's contents are lost or restored while this is
+     * happening (for example when the display mode changes), the frame is
+     * drawn again.
+     * 
+     * @param snapshot The snapshot to draw, or null to draw the live game state
+     * @param alpha How far between the previous and current tick to draw, 0..1
+     * @return false if there was no buffer strategy to draw with
+     */
+    private boolean render(SceneSnapshot snapshot, float alpha)
+    {
+    	BufferStrategy strategy = win.getBufferStrategy();
+    	if (strategy == null)
+    	{
+        	System.err.println("Null reference for buffer strategy");
+        	return false;
+    	}
+    	
+    	long start = System.nanoTime();
+    	long drawn;
+    	long presented = 0;
+    	
+    	do {
+    		do {
+    	        Graphics2D g = (Graphics2D)strategy.getDrawGraphics();
+    	        
+            	// Set the clipping (drawable) region to be the screen bounds
+            	g.setClip(0, 0, getWidth(), getHeight());
+    	        if (snapshot == null)
+    	        	draw(g, alpha);
+    	        else
+    	        	draw(g, snapshot, alpha);
+    	        g.dispose();
+    		} while (strategy.contentsRestored());
+    		
+    		drawn = System.nanoTime();
+    		strategy.show();
+    		presented += System.nanoTime() - drawn;
+    	} while (strategy.contentsLost());
+    	
+        // Sync the display on some systems.
+        // (on Linux, this fixes event queue problems)
+    	if (syncDisplay)
+    	{
+    		drawn = System.nanoTime();
+    		Toolkit.getDefaultToolkit().sync();
+    		presented += System.nanoTime() - drawn;
+    	}
+    	
+    	presentNanos = presented;
+    	drawNanos = System.nanoTime() - start - presented;
+        return true;
+    }
+    
+    /**
+     * Chooses whether Toolkit.sync() is called after each frame is shown.
+     * Syncing avoids frames being held back by the windowing system on
+     * some platforms (notably Linux), at the cost of a little time per frame.
+     * 
+     * @param sync True to sync the display after every frame
+     */
+    public void setSyncDisplay(boolean sync) { syncDisplay = sync; }
 
     /**
      * @return The screen width in pixels
      */
     public int getWidth()
     {
+    	if (headless)
+    		return headlessWidth;
     	if (fullScreen) 
     		return screen.getWidth();
     	else
-    		return super.getWidth();
+    		return frame.getWidth();
     }
     
     /**
@@ -231,19 +583,30 @@ public abstract class GameCore extends JFrame implements KeyListener, MouseListe
      */
     public int getHeight()
     {
+    	if (headless)
+    		return headlessHeight;
     	if (fullScreen) 
     		return screen.getHeight();
     	else
-    		return super.getHeight();
+    		return frame.getHeight();
     }
     
+    /**
+     * Gets the rolling frame time histograms for the update, draw, present
+     * and sleep phases of recent frames. Unlike getFPS(), these show short
+     * hitches as soon as they happen.
+     * 
+     * @return The frame timing statistics for the game loop
+     */
+    public FrameStats getFrameStats() { return frameStats; }
+    
     /**
      * @return The current frames per second (FPS)
      */
     public float getFPS()
     {
     	if (currTime - startTime <= 0) return 0.0f;
-    	return (float)frames/((currTime - startTime)/1000.0f);
+    	return (float)frames/((float)(currTime - startTime)/NANOS_PER_SECOND);
     }
 
     /**
@@ -281,4 +644,47 @@ public abstract class GameCore extends JFrame implements KeyListener, MouseListe
      * @param g The Graphics2D object to draw with.
      */
     public abstract void draw(Graphics2D g);
+    
+    /**
+     * Called by the game loop to draw the screen. In fixed timestep mode
+     * 'alpha' is how far the current moment lies between the previous
+     * tick (0) and the latest one (1), so moving objects can be drawn at
+     * interpolated positions. By default this simply calls draw(g).
+     * 
+     * @param g The Graphics2D object to draw with.
+     * @param alpha Interpolation between the previous and latest tick
+     */
+    public void draw(Graphics2D g, float alpha) { draw(g); }
+    
+    /**
+     * Called in threaded mode to create the snapshots passed from the
+     * simulation thread to the render thread. Override this to use a
+     * subclass of SceneSnapshot holding extra game state.
+     * 
+     * @return A new, empty snapshot
+     */
+    protected SceneSnapshot createSnapshot() { return new SceneSnapshot(); }
+    
+    /**
+     * Called in threaded mode on the simulation thread after each batch of
+     * updates. Override this to record everything that draw() will need
+     * into 'snapshot', which has already been cleared.
+     * 
+     * @param snapshot The snapshot to fill in
+     */
+    protected void writeSnapshot(SceneSnapshot snapshot) { }
+    
+    /**
+     * Called in threaded mode on the render thread to draw a snapshot
+     * written by writeSnapshot(). By default this draws the snapshot's
+     * sprites with no camera offset.
+     * 
+     * @param g The Graphics2D object to draw with.
+     * @param snapshot The most recent snapshot of the game
+     * @param alpha Interpolation between the previous and latest tick
+     */
+    public void draw(Graphics2D g, SceneSnapshot snapshot, float alpha)
+    {
+    	snapshot.draw(g, alpha, 0, 0);
+    }
 }
@@ -1,7 +1,6 @@
 package game2D;
 
 import java.awt.*;
-import javax.swing.ImageIcon;
 
 /**
     Simple abstract class used for testing. Subclasses should
@@ -53,7 +52,7 @@ public abstract class GameCoreFS {
         currTime = 1;
     }
 
-    public Image loadImage(String fileName) { return new ImageIcon(fileName).getImage(); }
+    public Image loadImage(String fileName) { return CompatibleImage.load(fileName); }
 
     /** Runs through the game loop until stop() is called. */
     public void gameLoop() {
@@ -0,0 +1,120 @@
+package game2D;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * HeadlessRunner drives a GameCore without a window. Each tick calls the
+ * game's update() method with a fixed elapsed time and then, if drawing is
+ * enabled, its draw() method into an offscreen BufferedImage. Ticks are run
+ * back to back as fast as the CPU allows, which makes the runner suitable
+ * for throughput measurements and for running the game on machines with
+ * no display.
+ *
+ * @author naomi lambert
+ */
+public class HeadlessRunner {
+
+	private static final int STATS_WINDOW = 10000;	// Ticks covered by the timing histograms
+
+	private GameCore game;			// The game being driven
+	private boolean drawing;		// true if draw() should be called after each update
+
+	private BufferedImage buffer;	// Offscreen image the game draws to
+	private Graphics2D bg;			// Graphics device associated with the above image
+
+	private long ticks;				// Number of ticks run so far
+	private FrameStats stats;		// Update and draw timings of recent ticks
+
+	/**
+	 * Creates a runner for 'game' with a virtual screen of the given size.
+	 * The game's own initialisation (loading maps, sprites etc) should be
+	 * done before ticks are run.
+	 *
+	 * @param game		The game to drive
+	 * @param width		Width in pixels of the virtual screen
+	 * @param height	Height in pixels of the virtual screen
+	 */
+	public HeadlessRunner(GameCore game, int width, int height)
+	{
+		this.game = game;
+		game.initHeadless(width, height);
+
+		buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		bg = buffer.createGraphics();
+		bg.setClip(0, 0, width, height);
+		drawing = true;
+		stats = new FrameStats(STATS_WINDOW);
+	}
+
+	/**
+	 * Chooses whether the game is drawn after each update. Turning drawing
+	 * off measures the simulation on its own.
+	 *
+	 * @param draw True to call draw() after every update
+	 */
+	public void setDrawing(boolean draw) { drawing = draw; }
+
+	/**
+	 * @return True if draw() is called after every update
+	 */
+	public boolean isDrawing() { return drawing; }
+
+	/**
+	 * Sets how many of the most recent ticks the timing histograms cover.
+	 * Any timings recorded so far are discarded.
+	 *
+	 * @param ticks The number of ticks to keep timings for
+	 */
+	public void setStatsWindow(int ticks) { stats = new FrameStats(ticks); }
+
+	/**
+	 * Runs a single tick of 'elapsed' milliseconds.
+	 *
+	 * @param elapsed The elapsed time to pass to update()
+	 */
+	public void tick(long elapsed)
+	{
+		long start = System.nanoTime();
+		game.update(elapsed);
+		long updated = System.nanoTime();
+		if (drawing) game.draw(bg, 1.0f);
+		stats.record(updated - start, System.nanoTime() - updated, 0, 0);
+		ticks++;
+	}
+
+	/**
+	 * Runs 'count' ticks of 'elapsed' milliseconds each, as fast as possible.
+	 *
+	 * @param count		The number of ticks to run
+	 * @param elapsed	The elapsed time to pass to each update()
+	 * @return The wall clock time taken in nanoseconds
+	 */
+	public long run(int count, long elapsed)
+	{
+		long start = System.nanoTime();
+		for (int i=0; i<count; i++)
+			tick(elapsed);
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * @return The number of ticks run so far
+	 */
+	public long getTicks() { return ticks; }
+
+	/**
+	 * @return The update and draw timings of the most recent ticks
+	 */
+	public FrameStats getFrameStats() { return stats; }
+
+	/**
+	 * @return The offscreen image the game is drawn to
+	 */
+	public BufferedImage getImage() { return buffer; }
+
+	/**
+	 * Releases the offscreen graphics device.
+	 */
+	public void dispose() { bg.dispose(); }
+}
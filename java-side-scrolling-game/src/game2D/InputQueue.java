@@ -0,0 +1,116 @@
+package game2D;
+
+/**
+ * InputQueue passes input events from the AWT event thread to the game
+ * thread. Event handlers add() events as they arrive and the game drains
+ * them at the start of each tick, so input is always applied at a tick
+ * boundary. That makes it possible to record exactly which tick each event
+ * was applied on and to replay a session with the same result.
+ *
+ * Events are a type plus a single int value, e.g. a key code or the mouse
+ * x position.
+ *
+ * @author naomi lambert
+ */
+public class InputQueue {
+
+	// Event types
+	public static final int KEY_PRESSED = 0;
+	public static final int KEY_RELEASED = 1;
+	public static final int MOUSE_PRESSED = 2;
+	public static final int MOUSE_RELEASED = 3;
+	public static final int MOUSE_WHEEL = 4;
+
+	private static final String [] NAMES = { "press", "release", "mousedown", "mouseup", "wheel" };
+
+	/**
+	 * Something that can apply input events to a game.
+	 */
+	public interface Handler {
+		/**
+		 * Apply a single input event.
+		 *
+		 * @param type	One of the event type constants
+		 * @param value	The key code, mouse x position or wheel rotation
+		 */
+		void handleInput(int type, int value);
+	}
+
+	private int [] types = new int[16];			// Events being added
+	private int [] values = new int[16];
+	private int count;
+	private int [] drainTypes = new int[16];	// Events being drained
+	private int [] drainValues = new int[16];
+
+	/**
+	 * Adds an event to the queue. Safe to call from any thread.
+	 *
+	 * @param type	One of the event type constants
+	 * @param value	The key code, mouse x position or wheel rotation
+	 */
+	public synchronized void add(int type, int value)
+	{
+		if (count == types.length)
+		{
+			types = java.util.Arrays.copyOf(types, count * 2);
+			values = java.util.Arrays.copyOf(values, count * 2);
+		}
+		types[count] = type;
+		values[count] = value;
+		count++;
+	}
+
+	/**
+	 * Passes every queued event to 'handler', oldest first, and empties
+	 * the queue. Only call from the game thread.
+	 *
+	 * @param handler The handler to apply the events
+	 */
+	public void drain(Handler handler)
+	{
+		int n;
+		synchronized (this)
+		{
+			// Swap the arrays so events can keep arriving while we work
+			int [] t = types;
+			int [] v = values;
+			types = drainTypes;
+			values = drainValues;
+			drainTypes = t;
+			drainValues = v;
+			n = count;
+			count = 0;
+
+			if (types.length < drainTypes.length)
+			{
+				types = new int[drainTypes.length];
+				values = new int[drainTypes.length];
+			}
+		}
+
+		for (int i=0; i<n; i++)
+			handler.handleInput(drainTypes[i], drainValues[i]);
+	}
+
+	/**
+	 * Discards any queued events.
+	 */
+	public synchronized void clear() { count = 0; }
+
+	/**
+	 * @param type One of the event type constants
+	 * @return The name used for the event type in recordings
+	 */
+	public static String getName(int type) { return NAMES[type]; }
+
+	/**
+	 * @param name An event type name used in recordings
+	 * @return The matching event type, or -1 if there is none
+	 */
+	public static int getType(String name)
+	{
+		for (int t=0; t<NAMES.length; t++)
+			if (NAMES[t].equals(name)) return t;
+		return -1;
+	}
+}
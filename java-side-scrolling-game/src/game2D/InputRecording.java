@@ -0,0 +1,198 @@
+package game2D;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * An InputRecording holds everything needed to replay a play session: the
+ * random seed the game started with, the simulation tick length, the number
+ * of ticks played and every input event along with the tick it was applied
+ * on. Recordings are saved as plain text so that they can be committed and
+ * reviewed, in the format below:
+
+# input recording
+seed 8145193845716651
+tick 10
+ticks 5234
+// tick event value
+120 press 68
+187 release 68
+
+ * Event names are those given by InputQueue.getName().
+ *
+ * @author naomi lambert
+ */
+public class InputRecording {
+
+	private long seed;			// Seed for the game's random number generator
+	private long tickMillis;	// Length of a simulation tick in milliseconds
+	private long ticks;			// Number of ticks in the session
+
+	private int count;							// Number of events recorded
+	private long [] eventTicks = new long[64];	// Tick each event was applied on, in order
+	private int [] eventTypes = new int[64];
+	private int [] eventValues = new int[64];
+
+	private int cursor;			// Next event to be replayed
+
+	/**
+	 * Create an empty recording.
+	 *
+	 * @param seed			The seed the game's randomness was started with
+	 * @param tickMillis	The length of a simulation tick in milliseconds
+	 */
+	public InputRecording(long seed, long tickMillis)
+	{
+		this.seed = seed;
+		this.tickMillis = tickMillis;
+	}
+
+	/**
+	 * Records an event applied on tick 'tick'. Events must be added in
+	 * tick order.
+	 *
+	 * @param tick	The tick the event was applied on
+	 * @param type	One of the InputQueue event types
+	 * @param value	The event's value
+	 */
+	public void add(long tick, int type, int value)
+	{
+		if (count == eventTicks.length)
+		{
+			eventTicks = Arrays.copyOf(eventTicks, count * 2);
+			eventTypes = Arrays.copyOf(eventTypes, count * 2);
+			eventValues = Arrays.copyOf(eventValues, count * 2);
+		}
+		eventTicks[count] = tick;
+		eventTypes[count] = type;
+		eventValues[count] = value;
+		count++;
+
+		if (tick > ticks) ticks = tick;
+	}
+
+	/**
+	 * Passes the recorded events for tick 'tick' to 'handler'. Ticks
+	 * must be replayed in order.
+	 *
+	 * @param tick		The tick being replayed
+	 * @param handler	The handler to apply the events
+	 */
+	public void replay(long tick, InputQueue.Handler handler)
+	{
+		while (cursor < count && eventTicks[cursor] < tick)
+			cursor++;
+
+		while (cursor < count && eventTicks[cursor] == tick)
+		{
+			handler.handleInput(eventTypes[cursor], eventValues[cursor]);
+			cursor++;
+		}
+	}
+
+	/**
+	 * Moves replay back to the start of the recording.
+	 */
+	public void rewind() { cursor = 0; }
+
+	/**
+	 * @return The seed the game's randomness was started with
+	 */
+	public long getSeed() { return seed; }
+
+	/**
+	 * @return The length of a simulation tick in milliseconds
+	 */
+	public long getTickMillis() { return tickMillis; }
+
+	/**
+	 * @return The number of ticks in the session
+	 */
+	public long getTicks() { return ticks; }
+
+	/**
+	 * @param ticks The number of ticks in the session
+	 */
+	public void setTicks(long ticks) { this.ticks = ticks; }
+
+	/**
+	 * @return The number of events recorded
+	 */
+	public int getEventCount() { return count; }
+
+	/**
+	 * Saves the recording to the file 'path'.
+	 *
+	 * @param path The file to write
+	 */
+	public void save(String path) throws IOException
+	{
+		try (PrintWriter out = new PrintWriter(new FileWriter(path)))
+		{
+			out.println("# input recording");
+			out.println("seed " + seed);
+			out.println("tick " + tickMillis);
+			out.println("ticks " + ticks);
+			out.println("// tick event value");
+			for (int i=0; i<count; i++)
+				out.println(eventTicks[i] + " " + InputQueue.getName(eventTypes[i]) + " " + eventValues[i]);
+		}
+	}
+
+	/**
+	 * Loads a recording saved by save().
+	 *
+	 * @param path The file to read
+	 * @return The recording
+	 * @throws IOException if the file could not be read or is not a valid recording
+	 */
+	public static InputRecording load(String path) throws IOException
+	{
+		InputRecording rec = new InputRecording(0, 0);
+		long ticks = 0;
+
+		try (BufferedReader in = new BufferedReader(new FileReader(path)))
+		{
+			String line;
+			int lineNo = 0;
+			while ((line = in.readLine()) != null)
+			{
+				lineNo++;
+				String trimmed = line.trim();
+				if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith("//")) continue;
+
+				String [] vals = trimmed.split(" ");
+				try
+				{
+					if (vals[0].equals("seed"))
+						rec.seed = Long.parseLong(vals[1]);
+					else if (vals[0].equals("tick"))
+						rec.tickMillis = Long.parseLong(vals[1]);
+					else if (vals[0].equals("ticks"))
+						ticks = Long.parseLong(vals[1]);
+					else
+					{
+						int type = InputQueue.getType(vals[1]);
+						if (vals.length != 3 || type < 0)
+							throw new IOException("Bad event on line " + lineNo + " of '" + path + "'");
+						rec.add(Long.parseLong(vals[0]), type, Integer.parseInt(vals[2]));
+					}
+				}
+				catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+				{
+					throw new IOException("Bad value on line " + lineNo + " of '" + path + "'", e);
+				}
+			}
+		}
+
+		if (rec.tickMillis <= 0)
+			throw new IOException("No tick length in recording '" + path + "'");
+
+		rec.ticks = Math.max(rec.ticks, ticks);
+		return rec;
+	}
+}
@@ -0,0 +1,379 @@
+package game2D;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * MusicPlayer streams music through an AudioMixer. Rather than decoding
+ * a whole track before it starts, a loader thread reads and converts the
+ * file a small chunk at a time into a ring buffer that the mixer plays
+ * from, so a track starts as soon as its first chunk is read and only the
+ * ring buffer is held in memory, however long the track is.
+ *
+ * Tracks loop without a gap: at the end of the file the loader opens it
+ * again and carries on filling the same buffer. Playing a new track fades
+ * the old one out while the new one fades in.
+ *
+ * play() and stop() should be called from one thread, e.g. the game
+ * thread. They never touch the file, so they return straight away.
+ *
+ * @author naomi lambert
+ */
+public class MusicPlayer {
+
+	public static final int DEFAULT_FADE = 2000;		// Milliseconds to cross-fade between tracks
+
+	private static final int CHANNELS = AudioMixer.CHANNELS;
+	private static final int RING_FRAMES = 16384;		// Frames buffered ahead of the mixer, about 0.37 s
+	private static final int CHUNK_FRAMES = 2048;		// Frames read from the file at a time
+	private static final long FILL_WAIT = 5000000;		// Nanoseconds the loader rests when every buffer is full
+
+	private final AudioMixer mixer;
+	private byte [] chunk = new byte[CHUNK_FRAMES * AudioMixer.FORMAT.getFrameSize()];	// Used by the loader only
+
+	private volatile Track [] tracks = new Track[0];	// Tracks being loaded, replaced rather than changed
+	private Track current;								// The track playing or fading in, if any
+	private String currentPath;							// The last track asked for, even if it failed
+
+	private volatile long underruns;		// Periods the mixer found too little music buffered
+	private volatile long startLatency;		// Nanoseconds from play() to the latest track being heard
+
+	private volatile boolean running = true;
+	private Thread loader;
+
+	/**
+	 * A change in a track's volume, from whatever it is when the change
+	 * is first mixed to 'to' over 'frames' frames.
+	 */
+	private static final class Fade {
+
+		final float to;
+		final long frames;
+
+		Fade(float to, long frames)
+		{
+			this.to = to;
+			this.frames = Math.max(1, frames);
+		}
+	}
+
+	/**
+	 * A track being streamed. The loader writes into the ring and the
+	 * mixer reads from it; each only moves its own count, so neither
+	 * ever waits for the other.
+	 */
+	private final class Track implements AudioMixer.Source {
+
+		final String path;
+		final long requested = System.nanoTime();
+		final short [] ring = new short[RING_FRAMES * CHANNELS];
+		volatile long written;		// Samples written by the loader
+		volatile long read;			// Samples played by the mixer
+		volatile boolean ended;		// Faded out, cut off or unreadable, so to be let go
+		volatile Fade fade;			// The latest volume change asked for
+
+		// Used by the loader only
+		AudioInputStream in;
+		boolean readSinceOpen;
+
+		// Used by the mixer only
+		Fade following;				// The fade being followed
+		long fadeStart;				// The frame it started on
+		float fadeFrom;				// The volume it started from
+		float gain;
+		long mixed;					// Frames mixed, including any silence
+		boolean heard;
+
+		Track(String path, float gain)
+		{
+			this.path = path;
+			this.gain = gain;
+		}
+
+		float gainAt(long frame)
+		{
+			if (following == null) return gain;
+			long t = frame - fadeStart;
+			if (t >= following.frames) return following.to;
+			return fadeFrom + (following.to - fadeFrom) * t / following.frames;
+		}
+
+		public boolean mix(float [] mix, int frames)
+		{
+			if (ended) return false;
+
+			Fade f = fade;
+			if (f != following)
+			{
+				fadeFrom = gainAt(mixed);
+				fadeStart = mixed;
+				following = f;
+			}
+
+			int samples = frames * CHANNELS;
+			long r = read;
+			int n = (int)Math.min(written - r, samples);
+			if (n < samples && heard) underruns++;
+
+			int pos = (int)(r % ring.length);
+			for (int i=0; i<n; i+=CHANNELS)
+			{
+				float g = gainAt(mixed + i / CHANNELS);
+				int at = pos + i;
+				if (at >= ring.length) at -= ring.length;
+				for (int c=0; c<CHANNELS; c++)
+					mix[i + c] += ring[at + c] * g;
+			}
+
+			if (n > 0 && !heard)
+			{
+				heard = true;
+				startLatency = System.nanoTime() - requested;
+			}
+			mixed += frames;
+			gain = gainAt(mixed);
+			read = r + n;
+
+			if (following != null && following.to == 0 && mixed - fadeStart >= following.frames)
+			{
+				ended = true;
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Creates a player mixing onto 'mixer' and starts its loader thread.
+	 *
+	 * @param mixer The mixer to play the music on
+	 */
+	public MusicPlayer(AudioMixer mixer)
+	{
+		this.mixer = mixer;
+		loader = new Thread(this::run, "music-loader");
+		loader.setDaemon(true);
+		loader.start();
+	}
+
+	/**
+	 * Plays a track, cross-fading from any track playing over DEFAULT_FADE
+	 * milliseconds.
+	 *
+	 * @param path The WAV (or other Java Sound supported) file to play
+	 */
+	public void play(String path)
+	{
+		play(path, DEFAULT_FADE);
+	}
+
+	/**
+	 * Plays a track on a loop. If a track is already playing it fades out
+	 * as the new one fades in. Asking for the track already playing does
+	 * nothing.
+	 *
+	 * @param path			The WAV (or other Java Sound supported) file to play
+	 * @param fadeMillis	How long to cross-fade for, 0 to cut straight to the new track
+	 */
+	public void play(String path, int fadeMillis)
+	{
+		if (path.equals(currentPath)) return;
+		currentPath = path;
+
+		Track track;
+		if (current != null && fadeMillis > 0)
+		{
+			long frames = toFrames(fadeMillis);
+			current.fade = new Fade(0, frames);
+			track = new Track(path, 0);
+			track.fade = new Fade(1, frames);
+		}
+		else
+		{
+			if (current != null) current.ended = true;
+			track = new Track(path, 1);
+		}
+		current = track;
+
+		synchronized (this)
+		{
+			Track [] t = Arrays.copyOf(tracks, tracks.length + 1);
+			t[tracks.length] = track;
+			tracks = t;
+		}
+		mixer.addSource(track);
+		LockSupport.unpark(loader);
+	}
+
+	/**
+	 * Fades out the track playing.
+	 *
+	 * @param fadeMillis How long to fade out for, 0 to stop at once
+	 */
+	public void stop(int fadeMillis)
+	{
+		if (current != null)
+		{
+			if (fadeMillis > 0)
+				current.fade = new Fade(0, toFrames(fadeMillis));
+			else
+				current.ended = true;
+		}
+		current = null;
+		currentPath = null;
+	}
+
+	private static long toFrames(int millis)
+	{
+		return (long)(millis * AudioMixer.FORMAT.getFrameRate() / 1000);
+	}
+
+	/**
+	 * The loader thread: keeps every track's ring buffer topped up.
+	 */
+	private void run()
+	{
+		while (running)
+		{
+			boolean filled = false;
+			for (Track t: tracks)
+			{
+				if (t.ended)
+					release(t);
+				else if (fill(t))
+					filled = true;
+			}
+			if (!filled) LockSupport.parkNanos(FILL_WAIT);
+		}
+		for (Track t: tracks)
+			release(t);
+	}
+
+	/**
+	 * Reads the next chunk of a track into its ring buffer, if there is
+	 * room for it.
+	 *
+	 * @return true if anything was read
+	 */
+	private boolean fill(Track t)
+	{
+		int space = (int)(t.ring.length - (t.written - t.read));
+		if (space < CHUNK_FRAMES * CHANNELS) return false;
+
+		try
+		{
+			if (t.in == null) open(t);
+
+			int n = t.in.read(chunk, 0, chunk.length);
+			if (n < 0)
+			{
+				// Loop back to the start, with no gap
+				if (!t.readSinceOpen) throw new IOException("no sound in file");
+				t.in.close();
+				open(t);
+				return true;
+			}
+			t.readSinceOpen = true;
+
+			int samples = n / 2;
+			int pos = (int)(t.written % t.ring.length);
+			for (int i=0; i<samples; i++)
+			{
+				t.ring[pos] = (short)((chunk[2*i] & 0xff) | (chunk[2*i + 1] << 8));
+				if (++pos == t.ring.length) pos = 0;
+			}
+			t.written += samples;
+			return true;
+		}
+		catch (IOException | UnsupportedAudioFileException e)
+		{
+			System.err.println("Unable to play music '" + t.path + "': " + e.getMessage());
+			t.ended = true;
+			return false;
+		}
+	}
+
+	private static void open(Track t) throws IOException, UnsupportedAudioFileException
+	{
+		AudioInputStream in = AudioSystem.getAudioInputStream(new File(t.path));
+		if (!in.getFormat().matches(AudioMixer.FORMAT))
+			in = AudioSystem.getAudioInputStream(AudioMixer.FORMAT, in);
+		t.in = in;
+		t.readSinceOpen = false;
+	}
+
+	/**
+	 * Closes a track's file and stops loading and mixing it.
+	 */
+	private void release(Track t)
+	{
+		mixer.removeSource(t);
+		if (t.in != null)
+		{
+			try { t.in.close(); }
+			catch (IOException e) { }
+			t.in = null;
+		}
+
+		synchronized (this)
+		{
+			int i = Arrays.asList(tracks).indexOf(t);
+			if (i < 0) return;
+			Track [] rest = new Track[tracks.length - 1];
+			System.arraycopy(tracks, 0, rest, 0, i);
+			System.arraycopy(tracks, i + 1, rest, i, rest.length - i);
+			tracks = rest;
+		}
+	}
+
+	/**
+	 * Stops the music and the loader thread. The player cannot be used
+	 * afterwards.
+	 */
+	public void close()
+	{
+		stop(0);
+		running = false;
+		LockSupport.unpark(loader);
+		try { loader.join(); }
+		catch (InterruptedException ex) { }
+	}
+
+	/**
+	 * @return The track asked for by the latest play(), or null if stopped
+	 */
+	public String getTrack() { return currentPath; }
+
+	/**
+	 * @return true once the latest track has started to be heard
+	 */
+	public boolean isStarted()
+	{
+		Track t = current;
+		return t != null && t.read > 0;
+	}
+
+	/**
+	 * @return The time from play() to the latest track being heard, in nanoseconds
+	 */
+	public long getStartLatency() { return startLatency; }
+
+	/**
+	 * @return The number of periods in which the mixer ran out of music
+	 */
+	public long getUnderruns() { return underruns; }
+
+	/**
+	 * @return The bytes of sound held in memory, which does not depend on the length of the tracks
+	 */
+	public long getResidentBytes()
+	{
+		return chunk.length + (long)tracks.length * RING_FRAMES * CHANNELS * 2;
+	}
+}
@@ -0,0 +1,174 @@
+package game2D;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+
+/**
+ * A SceneSnapshot records what is needed to draw a set of sprites at one
+ * simulation tick: each sprite's current image, its previous and current
+ * position and how it should be drawn. It is filled in by the simulation
+ * thread and then only read by the render thread, so drawing never
+ * touches the live sprites. Snapshots are reused from tick to tick and
+ * only allocate when more sprites are added than have been seen before.
+ *
+ * Games that need to draw more than sprites can extend this class with
+ * their own fields.
+ *
+ * @author naomi lambert
+ */
+public class SceneSnapshot {
+
+	private static final int INITIAL_SIZE = 16;
+
+	private int count;			// Number of sprites recorded
+	private long tick;			// The simulation tick this snapshot was taken at
+	private long time;			// When the snapshot was published (System.nanoTime)
+
+	private Image [] images = new Image[INITIAL_SIZE];
+	private float [] x = new float[INITIAL_SIZE];			// Current positions
+	private float [] y = new float[INITIAL_SIZE];
+	private float [] prevX = new float[INITIAL_SIZE];		// Positions at the previous tick
+	private float [] prevY = new float[INITIAL_SIZE];
+	private int [] xoff = new int[INITIAL_SIZE];			// Extra draw offsets
+	private int [] yoff = new int[INITIAL_SIZE];
+	private double [] scale = new double[INITIAL_SIZE];	// Scale, when drawn transformed
+	private double [] rotation = new double[INITIAL_SIZE];	// Rotation in radians, when drawn transformed
+	private boolean [] transformed = new boolean[INITIAL_SIZE];
+
+	/**
+	 * Empties the snapshot ready to be filled in again.
+	 */
+	public void clear()
+	{
+		// Drop the image references so they can be collected
+		for (int i=0; i<count; i++)
+			images[i] = null;
+		count = 0;
+	}
+
+	/**
+	 * Records a sprite, if it is visible, to be drawn with Sprite.draw().
+	 *
+	 * @param s The sprite to record
+	 * @return The index of the sprite in the snapshot, or -1 if it is hidden
+	 */
+	public int add(Sprite s)
+	{
+		return add(s, 0, 0, false);
+	}
+
+	/**
+	 * Records a sprite, if it is visible.
+	 *
+	 * @param s				The sprite to record
+	 * @param extraX		An x offset to add to the camera offset when drawing it
+	 * @param extraY		A y offset to add to the camera offset when drawing it
+	 * @param transform		True to draw it scaled, as Sprite.drawTransformed() does
+	 * @return The index of the sprite in the snapshot, or -1 if it is hidden
+	 */
+	public int add(Sprite s, int extraX, int extraY, boolean transform)
+	{
+		if (!s.isVisible()) return -1;
+
+		if (count == images.length) grow();
+
+		int i = count++;
+		images[i] = s.getImage();
+		x[i] = s.getX();
+		y[i] = s.getY();
+		prevX[i] = s.getDrawX(0.0f);
+		prevY[i] = s.getDrawY(0.0f);
+		xoff[i] = extraX;
+		yoff[i] = extraY;
+		scale[i] = s.getScale();
+		rotation[i] = Math.toRadians(s.getRotation());
+		transformed[i] = transform;
+		return i;
+	}
+
+	/**
+	 * @return The number of sprites in the snapshot
+	 */
+	public int getCount() { return count; }
+
+	/**
+	 * Gets the x position to draw sprite 'i' at, 'alpha' of the way from
+	 * its previous to its current position.
+	 */
+	public float getDrawX(int i, float alpha) { return prevX[i] + (x[i] - prevX[i]) * alpha; }
+
+	/**
+	 * Gets the y position to draw sprite 'i' at, 'alpha' of the way from
+	 * its previous to its current position.
+	 */
+	public float getDrawY(int i, float alpha) { return prevY[i] + (y[i] - prevY[i]) * alpha; }
+
+	/**
+	 * @return The image recorded for sprite 'i'
+	 */
+	public Image getImage(int i) { return images[i]; }
+
+	/**
+	 * Draws every sprite in the snapshot in the order it was added.
+	 *
+	 * @param g		The graphics device to draw to
+	 * @param alpha	How far between the previous and current tick to draw
+	 * @param xo	The camera x offset
+	 * @param yo	The camera y offset
+	 */
+	public void draw(Graphics2D g, float alpha, int xo, int yo)
+	{
+		for (int i=0; i<count; i++)
+		{
+			Image img = images[i];
+			if (img == null) continue;
+
+			if (transformed[i])
+			{
+				AffineTransform transform = new AffineTransform();
+				transform.translate(Math.round(getDrawX(i, alpha))+xo+xoff[i],Math.round(getDrawY(i, alpha))+yo+yoff[i]);
+				transform.scale(scale[i],scale[i]);
+				transform.rotate(rotation[i],img.getWidth(null)/2,img.getHeight(null)/2);
+				g.drawImage(img,transform,null);
+			}
+			else
+				g.drawImage(img,(int)getDrawX(i, alpha)+xo+xoff[i],(int)getDrawY(i, alpha)+yo+yoff[i],null);
+		}
+	}
+
+	/**
+	 * @return The simulation tick the snapshot was taken at
+	 */
+	public long getTick() { return tick; }
+
+	/**
+	 * @return The System.nanoTime() at which the snapshot was published
+	 */
+	public long getTime() { return time; }
+
+	/**
+	 * Stamps the snapshot just before it is published.
+	 */
+	void setTaken(long tick, long time)
+	{
+		this.tick = tick;
+		this.time = time;
+	}
+
+	private void grow()
+	{
+		int size = images.length * 2;
+		images = Arrays.copyOf(images, size);
+		x = Arrays.copyOf(x, size);
+		y = Arrays.copyOf(y, size);
+		prevX = Arrays.copyOf(prevX, size);
+		prevY = Arrays.copyOf(prevY, size);
+		xoff = Arrays.copyOf(xoff, size);
+		yoff = Arrays.copyOf(yoff, size);
+		scale = Arrays.copyOf(scale, size);
+		rotation = Arrays.copyOf(rotation, size);
+		transformed = Arrays.copyOf(transformed, size);
+	}
+}
@@ -131,11 +131,23 @@ public class ScreenManager {
             frame.setSize(displayMode.getWidth(),
                 displayMode.getHeight());
         }
+        createBufferStrategy(frame, 2);
+    }
+
+
+    /**
+        Creates a BufferStrategy with the given number of buffers
+        for a window that is already displayable. Used for both
+        the full screen window and windowed mode.
+    */
+    public static void createBufferStrategy(final Window window,
+        final int buffers)
+    {
         // avoid potential deadlock in 1.4.1_02
         try {
             EventQueue.invokeAndWait(new Runnable() {
                 public void run() {
-                    frame.createBufferStrategy(2);
+                    window.createBufferStrategy(buffers);
                 }
             });
         }
@@ -145,8 +157,6 @@ public class ScreenManager {
         catch (InvocationTargetException  ex) {
             // ignore
         }
-
-
     }
 
 
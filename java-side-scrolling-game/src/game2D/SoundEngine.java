@@ -0,0 +1,164 @@
+package game2D;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * SoundEngine plays short sound effects. Each effect is read and decoded
+ * once, when it is loaded, and is then played on an AudioMixer: a fixed
+ * pool of voices mixed in software onto a single audio line. play() only
+ * queues the effect and returns, so it can be called from the game
+ * thread; the mixer's thread starts it at the beginning of the next
+ * period. If every voice is busy the one that has been playing longest
+ * is given the new effect.
+ *
+ * If no audio device can be opened the engine runs silently: effects are
+ * still decoded, queued and mixed as they would have been, so the engine
+ * behaves and can be measured the same way on a machine without sound.
+ *
+ * @author naomi lambert
+ */
+public class SoundEngine {
+
+	private AudioMixer mixer;
+	private ArrayList<short[]> effects = new ArrayList<short[]>();
+	private HashMap<String,Integer> ids = new HashMap<String,Integer>();
+	private boolean available;				// false if there is no audio device
+
+	/**
+	 * Creates an engine and starts its mixer.
+	 *
+	 * @param voices The most effects that can play at once
+	 */
+	public SoundEngine(int voices)
+	{
+		mixer = new AudioMixer(voices, AudioMixer.DEFAULT_PERIOD);
+		available = mixer.start();
+	}
+
+	/**
+	 * Reads and decodes the effect in 'path'. Loading the same path again
+	 * returns the same id without reading it again.
+	 *
+	 * @param path The WAV (or other Java Sound supported) file to load
+	 * @return The id to play the effect with, or -1 if it could not be read
+	 */
+	public synchronized int load(String path)
+	{
+		Integer id = ids.get(path);
+		if (id != null) return id;
+
+		try
+		{
+			effects.add(AudioMixer.decode(path));
+		}
+		catch (IOException | UnsupportedAudioFileException e)
+		{
+			System.err.println("Unable to load sound '" + path + "': " + e.getMessage());
+			return -1;
+		}
+		ids.put(path, effects.size() - 1);
+		return effects.size() - 1;
+	}
+
+	/**
+	 * Plays a loaded effect at its own volume.
+	 *
+	 * @param id The id returned by load()
+	 * @return true if the play was queued, false if the id is not valid or too many are waiting
+	 */
+	public boolean play(int id)
+	{
+		return play(id, 1);
+	}
+
+	/**
+	 * Plays a loaded effect. This only queues the play, so it returns
+	 * straight away; the effect starts within a period of the mixer.
+	 *
+	 * @param id	The id returned by load()
+	 * @param gain	The volume to play it at, 1 for as it is
+	 * @return true if the play was queued, false if the id is not valid or too many are waiting
+	 */
+	public boolean play(int id, float gain)
+	{
+		short [] effect;
+		synchronized (this)
+		{
+			if (id < 0 || id >= effects.size()) return false;
+			effect = effects.get(id);
+		}
+		return mixer.play(effect, gain);
+	}
+
+	/**
+	 * Stops the mixer. The engine cannot be used afterwards.
+	 */
+	public void close()
+	{
+		mixer.close();
+	}
+
+	/**
+	 * @return The mixer the effects are played on
+	 */
+	public AudioMixer getMixer() { return mixer; }
+
+	/**
+	 * @return true if sounds are heard, false if there is no audio device
+	 */
+	public boolean isAvailable() { return available; }
+
+	/**
+	 * @return The number of effects loaded
+	 */
+	public synchronized int getSoundCount() { return effects.size(); }
+
+	/**
+	 * @return The number of bytes of decoded sound held
+	 */
+	public synchronized long getDecodedBytes()
+	{
+		long bytes = 0;
+		for (short [] e: effects)
+			bytes += e.length * 2L;
+		return bytes;
+	}
+
+	/**
+	 * @return The number of plays started
+	 */
+	public long getPlays() { return mixer.getPlays(); }
+
+	/**
+	 * @return The number of plays dropped because too many were waiting
+	 */
+	public long getDropped() { return mixer.getDropped(); }
+
+	/**
+	 * @return The number of plays that cut off another effect
+	 */
+	public long getStolen() { return mixer.getStolen(); }
+
+	/**
+	 * Gets a percentile of the time from play() to the effect starting,
+	 * over the most recent plays.
+	 *
+	 * @param fraction The percentile to get, e.g. 0.99
+	 * @return The latency at that percentile in nanoseconds
+	 */
+	public long getLatency(double fraction) { return mixer.getLatency(fraction); }
+
+	/**
+	 * @return A one line summary of the engine, e.g. for printing after a run
+	 */
+	public synchronized String summary()
+	{
+		return String.format("sounds  %d effects  %.1f KB decoded  %d voices  %d plays  %d stolen  %d dropped  latency p50 %.2f p99 %.2f ms%s",
+				effects.size(), getDecodedBytes() / 1024.0, mixer.getVoices(), getPlays(), getStolen(), getDropped(),
+				getLatency(0.5) / 1e6, getLatency(0.99) / 1e6, available ? "" : "  (muted)");
+	}
+}
@@ -0,0 +1,382 @@
+package game2D;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A SpatialHash finds the sprites that might overlap a rectangle without
+ * testing every sprite. The world is divided into a uniform grid of cells,
+ * usually the size of a map tile, and each sprite is listed in every cell
+ * its bounding box touches. A query only looks at the sprites listed in
+ * the cells the query rectangle touches.
+ *
+ * Sprites are added once and update() is called after they move; only
+ * sprites that have moved into different cells are relisted. Cells are
+ * found through an open addressing hash table and cell lists are built
+ * from pooled nodes, so once the table and pools have grown to fit,
+ * adding, updating and querying allocate nothing.
+ *
+ * @author naomi lambert
+ */
+public class SpatialHash implements Broadphase {
+
+	private static final int NONE = -1;
+
+	private int cellWidth;		// Size of a cell in pixels
+	private int cellHeight;
+
+	// The sprites held, and the range of cells each one is listed in
+	private int count;
+	private Sprite [] sprites = new Sprite[16];
+	private int [] minCellX = new int[16];
+	private int [] minCellY = new int[16];
+	private int [] maxCellX = new int[16];
+	private int [] maxCellY = new int[16];
+	private int [] seen = new int[16];		// The query that last reported each sprite
+	private int query;						// Number of queries made, used to skip duplicates
+
+	// Hash table of cells. keys holds a cell's packed coordinates and
+	// heads the first node of its list, or NONE if the list is empty.
+	// Cells stay in the table once used, until clear() is called.
+	private long [] keys = new long[64];
+	private int [] heads = new int[64];
+	private boolean [] used = new boolean[64];	// true if a slot holds a cell
+	private int cells;							// Number of slots in use
+
+	// Pool of list nodes, each holding a sprite index and the next node
+	private int [] nodeSprite = new int[64];
+	private int [] nodeNext = new int[64];
+	private int freeNode = NONE;			// First node in the free list
+	private int nodesUsed;					// Nodes handed out from the end of the pool
+
+	/**
+	 * Create an empty spatial hash.
+	 *
+	 * @param cellWidth		The width of a cell in pixels
+	 * @param cellHeight	The height of a cell in pixels
+	 */
+	public SpatialHash(int cellWidth, int cellHeight)
+	{
+		this.cellWidth = cellWidth;
+		this.cellHeight = cellHeight;
+		Arrays.fill(heads, NONE);
+	}
+
+	/**
+	 * Adds a sprite at its current position.
+	 *
+	 * @param s The sprite to add
+	 */
+	public void add(Sprite s)
+	{
+		if (count == sprites.length) growSprites();
+
+		int i = count++;
+		sprites[i] = s;
+		seen[i] = query;
+		minCellX[i] = cellX(s.getMinX());
+		minCellY[i] = cellY(s.getMinY());
+		maxCellX[i] = cellX(s.getMaxX());
+		maxCellY[i] = cellY(s.getMaxY());
+		link(i);
+	}
+
+	/**
+	 * Removes a sprite.
+	 *
+	 * @param s The sprite to remove
+	 * @return true if the sprite was in the hash
+	 */
+	public boolean remove(Sprite s)
+	{
+		for (int i=0; i<count; i++)
+		{
+			if (sprites[i] != s) continue;
+
+			unlink(i);
+
+			// Move the last sprite into the gap
+			int last = --count;
+			if (i != last)
+			{
+				unlink(last);
+				sprites[i] = sprites[last];
+				minCellX[i] = minCellX[last];
+				minCellY[i] = minCellY[last];
+				maxCellX[i] = maxCellX[last];
+				maxCellY[i] = maxCellY[last];
+				seen[i] = seen[last];
+				link(i);
+			}
+			sprites[last] = null;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Relists any sprites that have moved into different cells since they
+	 * were added or last updated. Call after the sprites have moved.
+	 */
+	public void update()
+	{
+		for (int i=0; i<count; i++)
+		{
+			Sprite s = sprites[i];
+			int x0 = cellX(s.getMinX());
+			int y0 = cellY(s.getMinY());
+			int x1 = cellX(s.getMaxX());
+			int y1 = cellY(s.getMaxY());
+
+			if (x0 == minCellX[i] && y0 == minCellY[i] && x1 == maxCellX[i] && y1 == maxCellY[i])
+				continue;
+
+			unlink(i);
+			minCellX[i] = x0;
+			minCellY[i] = y0;
+			maxCellX[i] = x1;
+			maxCellY[i] = y1;
+			link(i);
+		}
+	}
+
+	/**
+	 * Removes every sprite.
+	 */
+	public void clear()
+	{
+		Arrays.fill(sprites, 0, count, null);
+		count = 0;
+		Arrays.fill(heads, NONE);
+		Arrays.fill(used, false);
+		cells = 0;
+		freeNode = NONE;
+		nodesUsed = 0;
+	}
+
+	/**
+	 * @return The number of sprites held
+	 */
+	public int size() { return count; }
+
+	/**
+	 * Adds to 'out' every sprite listed in a cell that the given rectangle
+	 * touches, each once. These are the only sprites that can overlap the
+	 * rectangle, though not all of them will.
+	 *
+	 * @param x			The left edge of the rectangle in pixels
+	 * @param y			The top edge of the rectangle in pixels
+	 * @param width		The width of the rectangle in pixels
+	 * @param height	The height of the rectangle in pixels
+	 * @param out		The list to add the candidate sprites to
+	 * @return The number of sprites added
+	 */
+	public int query(float x, float y, float width, float height, List<Sprite> out)
+	{
+		query++;
+		int found = 0;
+		int x0 = cellX(x), x1 = cellX(x + width);
+		int y0 = cellY(y), y1 = cellY(y + height);
+
+		for (int cy=y0; cy<=y1; cy++)
+		{
+			for (int cx=x0; cx<=x1; cx++)
+			{
+				int slot = find(cx, cy);
+				if (slot < 0) continue;
+
+				for (int n=heads[slot]; n != NONE; n=nodeNext[n])
+				{
+					int i = nodeSprite[n];
+					if (seen[i] == query) continue;
+					seen[i] = query;
+					out.add(sprites[i]);
+					found++;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Finds every pair of sprites whose bounding boxes overlap. Only
+	 * sprites listed in the same cell are compared, and a pair listed
+	 * together in several cells is only reported from one of them: the
+	 * cell holding the top left corner of the area the two ranges share.
+	 *
+	 * @param out The list to add the pairs to
+	 * @return The number of pairs added
+	 */
+	public int findPairs(List<Sprite> out)
+	{
+		int found = 0;
+		for (int slot=0; slot<keys.length; slot++)
+		{
+			if (!used[slot] || heads[slot] == NONE) continue;
+
+			int cx = (int)(keys[slot] >> 32);
+			int cy = (int)keys[slot];
+
+			for (int n=heads[slot]; n != NONE; n=nodeNext[n])
+			{
+				int a = nodeSprite[n];
+				for (int m=nodeNext[n]; m != NONE; m=nodeNext[m])
+				{
+					int b = nodeSprite[m];
+					if (Math.max(minCellX[a], minCellX[b]) != cx || Math.max(minCellY[a], minCellY[b]) != cy)
+						continue;
+					if (!Broadphase.overlaps(sprites[a], sprites[b])) continue;
+
+					out.add(sprites[a]);
+					out.add(sprites[b]);
+					found++;
+				}
+			}
+		}
+		return found;
+	}
+
+	private int cellX(float x) { return (int)Math.floor(x / cellWidth); }
+
+	private int cellY(float y) { return (int)Math.floor(y / cellHeight); }
+
+	/**
+	 * Lists sprite 'i' in every cell of its range.
+	 */
+	private void link(int i)
+	{
+		for (int cy=minCellY[i]; cy<=maxCellY[i]; cy++)
+		{
+			for (int cx=minCellX[i]; cx<=maxCellX[i]; cx++)
+			{
+				int slot = findOrAdd(cx, cy);
+				int n = newNode();
+				nodeSprite[n] = i;
+				nodeNext[n] = heads[slot];
+				heads[slot] = n;
+			}
+		}
+	}
+
+	/**
+	 * Takes sprite 'i' out of every cell of its range.
+	 */
+	private void unlink(int i)
+	{
+		for (int cy=minCellY[i]; cy<=maxCellY[i]; cy++)
+		{
+			for (int cx=minCellX[i]; cx<=maxCellX[i]; cx++)
+			{
+				int slot = find(cx, cy);
+				if (slot < 0) continue;
+
+				int prev = NONE;
+				for (int n=heads[slot]; n != NONE; prev=n, n=nodeNext[n])
+				{
+					if (nodeSprite[n] != i) continue;
+					if (prev == NONE)
+						heads[slot] = nodeNext[n];
+					else
+						nodeNext[prev] = nodeNext[n];
+					nodeNext[n] = freeNode;
+					freeNode = n;
+					break;
+				}
+			}
+		}
+	}
+
+	private int newNode()
+	{
+		if (freeNode != NONE)
+		{
+			int n = freeNode;
+			freeNode = nodeNext[n];
+			return n;
+		}
+		if (nodesUsed == nodeSprite.length)
+		{
+			nodeSprite = Arrays.copyOf(nodeSprite, nodesUsed * 2);
+			nodeNext = Arrays.copyOf(nodeNext, nodesUsed * 2);
+		}
+		return nodesUsed++;
+	}
+
+	private static long key(int cx, int cy)
+	{
+		return ((long)cx << 32) | (cy & 0xffffffffL);
+	}
+
+	private int slotFor(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h >>> 32) & (keys.length - 1);
+	}
+
+	/**
+	 * @return The table slot of cell 'cx,cy', or -1 if it has never been used
+	 */
+	private int find(int cx, int cy)
+	{
+		long k = key(cx, cy);
+		for (int slot = slotFor(k); ; slot = (slot + 1) & (keys.length - 1))
+		{
+			if (!used[slot]) return -1;
+			if (keys[slot] == k) return slot;
+		}
+	}
+
+	/**
+	 * @return The table slot of cell 'cx,cy', adding it if need be
+	 */
+	private int findOrAdd(int cx, int cy)
+	{
+		int slot = find(cx, cy);
+		if (slot >= 0) return slot;
+
+		if ((cells + 1) * 2 > keys.length) growTable();
+
+		long k = key(cx, cy);
+		slot = slotFor(k);
+		while (used[slot])
+			slot = (slot + 1) & (keys.length - 1);
+		keys[slot] = k;
+		used[slot] = true;
+		cells++;
+		return slot;
+	}
+
+	private void growTable()
+	{
+		long [] oldKeys = keys;
+		int [] oldHeads = heads;
+		boolean [] oldUsed = used;
+
+		keys = new long[oldKeys.length * 2];
+		heads = new int[oldKeys.length * 2];
+		used = new boolean[oldKeys.length * 2];
+		Arrays.fill(heads, NONE);
+
+		for (int i=0; i<oldKeys.length; i++)
+		{
+			if (!oldUsed[i]) continue;
+			int slot = slotFor(oldKeys[i]);
+			while (used[slot])
+				slot = (slot + 1) & (keys.length - 1);
+			keys[slot] = oldKeys[i];
+			heads[slot] = oldHeads[i];
+			used[slot] = true;
+		}
+	}
+
+	private void growSprites()
+	{
+		int size = sprites.length * 2;
+		sprites = Arrays.copyOf(sprites, size);
+		minCellX = Arrays.copyOf(minCellX, size);
+		minCellY = Arrays.copyOf(minCellY, size);
+		maxCellX = Arrays.copyOf(maxCellX, size);
+		maxCellY = Arrays.copyOf(maxCellY, size);
+		seen = Arrays.copyOf(seen, size);
+	}
+}
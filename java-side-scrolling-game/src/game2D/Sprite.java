@@ -19,6 +19,11 @@ public class Sprite {
     // Position (pixels)
     private float x;
     private float y;
+    
+    // Position at the start of the current simulation tick (pixels),
+    // used to interpolate the drawn position between ticks
+    private float prevX;
+    private float prevY;
 
     // Velocity (pixels per millisecond)
     private float dx;
@@ -41,6 +46,11 @@ public class Sprite {
     // relative to specific on screen position (usually the player)
     private int xoff=0;
     private int yoff=0;
+
+    // The AnimationSystem advancing this sprite's animation, if any,
+    // and the sprite's slot in it. Set by the system.
+    AnimationSystem animations;
+    int animSlot = -1;
     
 
     /**
@@ -63,7 +73,9 @@ public class Sprite {
      */
     public void setAnimation(Animation a)
     {
-    		anim = a;
+    	if (animations != null && a != anim)
+    		animations.rebind(animSlot, a);
+    	anim = a;
     }
     
     /**
@@ -173,6 +185,32 @@ public class Sprite {
     public void setY(float y) {
     	this.y = y;        
     }
+    
+    /**
+    	Remembers the current position as the previous position. Call
+    	this at the start of each simulation tick so that the sprite
+    	can be drawn part way between ticks.
+    */
+    public void storePosition() {
+    	prevX = x;
+    	prevY = y;
+    }
+    
+    /**
+    	Gets the x position to draw at, 'alpha' of the way from the
+    	position stored by storePosition() to the current position.
+    */
+    public float getDrawX(float alpha) {
+    	return prevX + (x - prevX) * alpha;
+    }
+    
+    /**
+    	Gets the y position to draw at, 'alpha' of the way from the
+    	position stored by storePosition() to the current position.
+    */
+    public float getDrawY(float alpha) {
+    	return prevY + (y - prevY) * alpha;
+    }
  
     
     /**
@@ -297,7 +335,33 @@ public class Sprite {
     {
     	if (!render) return;
 
-    	g.drawImage(getImage(),(int)x+xoff,(int)y+yoff,null);
+    	drawImage(g,(int)x+xoff,(int)y+yoff);
+    }
+    
+	/**
+		Draws the sprite with the graphics object 'g' at a position
+		interpolated 'alpha' of the way between its previous and
+		current position. Scaling and rotation transforms are NOT applied.
+	*/
+    public void draw(Graphics2D g, float alpha)
+    {
+    	if (!render) return;
+
+    	drawImage(g,(int)getDrawX(alpha)+xoff,(int)getDrawY(alpha)+yoff);
+    }
+
+	/**
+		Draws the current image at 'dx,dy'. A frame packed into a
+		texture atlas is copied out of its atlas page, so that every
+		frame on the page is drawn from the same source image.
+	*/
+    private void drawImage(Graphics2D g, int dx, int dy)
+    {
+    	Image image = getImage();
+    	if (image instanceof TextureAtlas.Region)
+    		((TextureAtlas.Region)image).draw(g,dx,dy);
+    	else
+    		g.drawImage(image,dx,dy,null);
     }
 
 	/**
@@ -319,6 +383,26 @@ public class Sprite {
 		// Apply transform to the image and draw it
 		g.drawImage(getImage(),transform,null);
     }
+    
+	/**
+		Draws the sprite with the current scaling and rotation transforms
+		applied, at a position interpolated 'alpha' of the way between
+		its previous and current position.
+		
+		@param g The graphics object to draw to,
+		@param alpha How far between the previous and current position to draw
+	*/
+    public void drawTransformed(Graphics2D g, float alpha)
+    {
+    	if (!render) return;
+
+		AffineTransform transform = new AffineTransform();
+		transform.translate(Math.round(getDrawX(alpha))+xoff,Math.round(getDrawY(alpha))+yoff);
+		transform.scale(scale,scale);
+
+		transform.rotate(rotation,getImage().getWidth(null)/2,getImage().getHeight(null)/2);
+		g.drawImage(getImage(),transform,null);
+    }
 
 
 	/**
@@ -347,11 +431,68 @@ public class Sprite {
     	yoff = y;
     }
  
+    /**
+        Gets the left edge of this Sprite's bounding box.
+    */
+    public float getMinX() {
+        return x;
+    }
+
+    /**
+        Gets the top edge of this Sprite's bounding box.
+    */
+    public float getMinY() {
+        return y;
+    }
+
+    /**
+        Gets the right edge of this Sprite's bounding box.
+    */
+    public float getMaxX() {
+        return x + getWidth();
+    }
+
+    /**
+        Gets the bottom edge of this Sprite's bounding box.
+    */
+    public float getMaxY() {
+        return y + getHeight();
+    }
+
+    /**
+        Checks whether this Sprite's bounding box overlaps that of
+        'other'. Positions are truncated to whole pixels and boxes
+        that only touch do not overlap, as with getBoundingRectSprite().
+        Nothing is allocated, so this is safe to call every tick.
+    */
+    public boolean intersects(Sprite other) {
+    	int w = getWidth(), h = getHeight();
+    	int ow = other.getWidth(), oh = other.getHeight();
+    	if (w <= 0 || h <= 0 || ow <= 0 || oh <= 0) return false;
+
+    	int sx = (int)x, sy = (int)y;
+    	int ox = (int)other.x, oy = (int)other.y;
+    	return sx < ox + ow && ox < sx + w && sy < oy + oh && oy < sy + h;
+    }
+
     /**
      * Returns the bouding rect of the given sprite
      */
 	public Rectangle getBoundingRectSprite() {
-		return new Rectangle(new Point((int)this.getX(), (int)this.getY()), new Dimension(this.getWidth(), this.getHeight()));
+		return getBoundingRectSprite(new Rectangle());
+	}
+
+    /**
+     * Sets 'r' to the bounding rect of this sprite, in whole pixels,
+     * so that one Rectangle can be reused rather than allocating a
+     * new one on every call.
+     * 
+     * @param r The rectangle to fill in
+     * @return 'r'
+     */
+	public Rectangle getBoundingRectSprite(Rectangle r) {
+		r.setBounds((int)x, (int)y, getWidth(), getHeight());
+		return r;
 	}
 
 }
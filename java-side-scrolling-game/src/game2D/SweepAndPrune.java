@@ -0,0 +1,180 @@
+package game2D;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A SweepAndPrune broadphase keeps its sprites sorted by the left edge of
+ * their bounding boxes. Two sprites can only overlap if their x ranges
+ * do, so finding pairs is a single sweep along x that only compares each
+ * sprite with the ones that start before it ends. This suits side
+ * scrolling levels, which are wide and short, so most sprites are kept
+ * apart by x alone.
+ *
+ * Sprites move a little each tick, so the order hardly changes and
+ * update() restores it with an insertion sort, which is close to linear
+ * on nearly sorted data.
+ *
+ * @author naomi lambert
+ */
+public class SweepAndPrune implements Broadphase {
+
+	private int count;
+	private Sprite [] sprites = new Sprite[16];		// Sorted by minX
+	private float [] minX = new float[16];			// Bounding boxes as of the last update
+	private float [] maxX = new float[16];
+	private float [] minY = new float[16];
+	private float [] maxY = new float[16];
+	private float widest;							// The widest box, bounding how far back a query looks
+
+	public void add(Sprite s)
+	{
+		if (count == sprites.length) grow();
+
+		// Insert in order of minX
+		float x = s.getMinX();
+		int i = count++;
+		while (i > 0 && minX[i-1] > x)
+		{
+			copy(i-1, i);
+			i--;
+		}
+		set(i, s);
+		widest = Math.max(widest, s.getWidth());
+	}
+
+	public boolean remove(Sprite s)
+	{
+		for (int i=0; i<count; i++)
+		{
+			if (sprites[i] != s) continue;
+
+			for (int j=i+1; j<count; j++)
+				copy(j, j-1);
+			sprites[--count] = null;
+			return true;
+		}
+		return false;
+	}
+
+	public void update()
+	{
+		widest = 0;
+		for (int i=0; i<count; i++)
+		{
+			set(i, sprites[i]);
+			widest = Math.max(widest, maxX[i] - minX[i]);
+		}
+
+		// Insertion sort by minX
+		for (int i=1; i<count; i++)
+		{
+			if (minX[i-1] <= minX[i]) continue;
+
+			Sprite s = sprites[i];
+			float x0 = minX[i], x1 = maxX[i], y0 = minY[i], y1 = maxY[i];
+			int j = i;
+			while (j > 0 && minX[j-1] > x0)
+			{
+				copy(j-1, j);
+				j--;
+			}
+			sprites[j] = s;
+			minX[j] = x0;
+			maxX[j] = x1;
+			minY[j] = y0;
+			maxY[j] = y1;
+		}
+	}
+
+	public void clear()
+	{
+		Arrays.fill(sprites, 0, count, null);
+		count = 0;
+		widest = 0;
+	}
+
+	public int size() { return count; }
+
+	public int query(float x, float y, float width, float height, List<Sprite> out)
+	{
+		// Nothing starting more than the widest box to the left can reach x
+		int i = firstAtOrAfter(x - widest);
+		float right = x + width;
+		float bottom = y + height;
+		int found = 0;
+
+		for (; i<count && minX[i] < right; i++)
+		{
+			if (maxX[i] > x && minY[i] < bottom && maxY[i] > y)
+			{
+				out.add(sprites[i]);
+				found++;
+			}
+		}
+		return found;
+	}
+
+	public int findPairs(List<Sprite> out)
+	{
+		int found = 0;
+		for (int i=0; i<count; i++)
+		{
+			for (int j=i+1; j<count && minX[j] < maxX[i]; j++)
+			{
+				if (minY[j] < maxY[i] && minY[i] < maxY[j])
+				{
+					out.add(sprites[i]);
+					out.add(sprites[j]);
+					found++;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return The index of the first sprite with minX >= x
+	 */
+	private int firstAtOrAfter(float x)
+	{
+		int lo = 0, hi = count;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (minX[mid] < x)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	private void set(int i, Sprite s)
+	{
+		sprites[i] = s;
+		minX[i] = s.getMinX();
+		maxX[i] = s.getMaxX();
+		minY[i] = s.getMinY();
+		maxY[i] = s.getMaxY();
+	}
+
+	private void copy(int from, int to)
+	{
+		sprites[to] = sprites[from];
+		minX[to] = minX[from];
+		maxX[to] = maxX[from];
+		minY[to] = minY[from];
+		maxY[to] = maxY[from];
+	}
+
+	private void grow()
+	{
+		int size = sprites.length * 2;
+		sprites = Arrays.copyOf(sprites, size);
+		minX = Arrays.copyOf(minX, size);
+		maxX = Arrays.copyOf(maxX, size);
+		minY = Arrays.copyOf(minY, size);
+		maxY = Arrays.copyOf(maxY, size);
+	}
+}
@@ -0,0 +1,384 @@
+package game2D;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A TextureAtlas packs many small images, such as animation frames, into
+ * a few large page images and remembers where each one went. Each packed
+ * image is a Region: a BufferedImage that shares its pixels with its page,
+ * so it can be used anywhere an Image is used, but which Sprite draws by
+ * copying its rectangle out of the page. Drawing every frame from a few
+ * pages lets Java2D keep a few accelerated copies rather than hundreds,
+ * and an atlas saved with write() loads with one file open per page
+ * instead of one per frame.
+ *
+ * Images are packed onto shelves: tallest first, left to right along a
+ * shelf as wide as the page, starting a new shelf below when a row is full
+ * and a new page when the page is full. Each page is then cut down to the
+ * area it uses. Pages, including those read from a saved atlas, are kept
+ * in the screen's format (see CompatibleImage).
+ *
+ * A saved atlas is a text index next to one PNG per page, e.g.
+ *
+ * # texture atlas
+ * page sprites0.png
+ * // path page x y width height
+ * images/player/right/walk/walk0.png 0 0 0 88 100
+ *
+ * @author naomi lambert
+ */
+public class TextureAtlas {
+
+	public static final int DEFAULT_PAGE_SIZE = 2048;	// Width and most height of a page, in pixels
+	private static final int PADDING = 1;				// Gap left between images so they never bleed
+
+	private ArrayList<BufferedImage> pages = new ArrayList<BufferedImage>();
+	private HashMap<String,Region> regions = new HashMap<String,Region>();
+	private ArrayList<String> names = new ArrayList<String>();	// Paths in the order they were packed
+
+	/**
+	 * An image packed into an atlas. It shares its pixels with its page,
+	 * so changing one changes the other.
+	 */
+	public static final class Region extends BufferedImage {
+
+		private final BufferedImage page;	// The page holding the region
+		private final int pageIndex;		// The index of that page in the atlas
+		private final int x, y;				// The region's top left corner on the page
+
+		Region(BufferedImage page, int pageIndex, int x, int y, int width, int height)
+		{
+			super(page.getColorModel(), page.getRaster().createWritableChild(x, y, width, height, 0, 0, null),
+					page.isAlphaPremultiplied(), null);
+			this.page = page;
+			this.pageIndex = pageIndex;
+			this.x = x;
+			this.y = y;
+		}
+
+		/**
+		 * @return The page image holding the region
+		 */
+		public BufferedImage getPage() { return page; }
+
+		/**
+		 * @return The index of the page holding the region
+		 */
+		public int getPageIndex() { return pageIndex; }
+
+		/**
+		 * @return The x position of the region on its page
+		 */
+		public int getPageX() { return x; }
+
+		/**
+		 * @return The y position of the region on its page
+		 */
+		public int getPageY() { return y; }
+
+		/**
+		 * Draws the region with its top left corner at 'dx,dy' by copying
+		 * its rectangle from the page.
+		 *
+		 * @param g		The graphics object to draw to
+		 * @param dx	The x position to draw at
+		 * @param dy	The y position to draw at
+		 */
+		public void draw(Graphics2D g, int dx, int dy)
+		{
+			int w = getWidth(), h = getHeight();
+			g.drawImage(page, dx, dy, dx + w, dy + h, x, y, x + w, y + h, null);
+		}
+	}
+
+	/**
+	 * Packs the images at 'paths' into a new atlas, loading each one with
+	 * ImageIO. Each image can then be found by the path it was loaded from.
+	 *
+	 * @param paths		The image files to pack
+	 * @param pageSize	The width and greatest height of a page
+	 * @return The atlas
+	 * @throws IOException if an image could not be read
+	 */
+	public static TextureAtlas pack(List<String> paths, int pageSize) throws IOException
+	{
+		BufferedImage [] images = new BufferedImage[paths.size()];
+		for (int i=0; i<images.length; i++)
+		{
+			images[i] = ImageIO.read(new File(paths.get(i)));
+			if (images[i] == null)
+				throw new IOException("Unable to read image '" + paths.get(i) + "'");
+		}
+		return pack(paths, images, pageSize);
+	}
+
+	/**
+	 * Packs 'images' into a new atlas, each found by the name at the same
+	 * position in 'names'.
+	 *
+	 * @param names		The name of each image
+	 * @param images	The images to pack
+	 * @param pageSize	The width and greatest height of a page
+	 * @return The atlas
+	 */
+	public static TextureAtlas pack(List<String> names, BufferedImage [] images, int pageSize)
+	{
+		if (names.size() != images.length)
+			throw new IllegalArgumentException("need one name per image");
+
+		// Tallest first, so that each shelf wastes little height
+		Integer [] order = new Integer[images.length];
+		for (int i=0; i<order.length; i++)
+		{
+			order[i] = i;
+			if (images[i].getWidth() > pageSize || images[i].getHeight() > pageSize)
+				throw new IllegalArgumentException("'" + names.get(i) + "' is larger than a page");
+		}
+		Arrays.sort(order, (a, b) -> images[b].getHeight() - images[a].getHeight());
+
+		int [] page = new int[images.length];
+		int [] px = new int[images.length];
+		int [] py = new int[images.length];
+		ArrayList<int[]> pageSizes = new ArrayList<int[]>();	// Used width and height of each page
+
+		int p = 0, shelfX = 0, shelfY = 0, shelfHeight = 0, usedWidth = 0;
+		for (int i: order)
+		{
+			int w = images[i].getWidth(), h = images[i].getHeight();
+			if (shelfX + w > pageSize)
+			{
+				// Start a new shelf below this one
+				shelfY += shelfHeight + PADDING;
+				shelfX = 0;
+				shelfHeight = 0;
+			}
+			if (shelfY + h > pageSize)
+			{
+				// Start a new page
+				pageSizes.add(new int[] { usedWidth, shelfY - PADDING });
+				p++;
+				shelfX = shelfY = shelfHeight = usedWidth = 0;
+			}
+			page[i] = p;
+			px[i] = shelfX;
+			py[i] = shelfY;
+			shelfX += w + PADDING;
+			shelfHeight = Math.max(shelfHeight, h);
+			usedWidth = Math.max(usedWidth, shelfX - PADDING);
+		}
+		if (images.length > 0)
+			pageSizes.add(new int[] { usedWidth, shelfY + shelfHeight });
+
+		TextureAtlas atlas = new TextureAtlas();
+		for (int [] size: pageSizes)
+			atlas.pages.add(CompatibleImage.create(Math.max(1, size[0]), Math.max(1, size[1]), Transparency.TRANSLUCENT));
+
+		// Copy the pixels as they are rather than blending them onto the
+		// empty page, which would round away detail in faint pixels
+		Graphics2D [] g = new Graphics2D[atlas.pages.size()];
+		for (int i=0; i<g.length; i++)
+		{
+			g[i] = atlas.pages.get(i).createGraphics();
+			g[i].setComposite(AlphaComposite.Src);
+		}
+		for (int i=0; i<images.length; i++)
+			g[page[i]].drawImage(images[i], px[i], py[i], null);
+		for (Graphics2D pg: g)
+			pg.dispose();
+
+		for (int i=0; i<images.length; i++)
+			atlas.addRegion(names.get(i), page[i], px[i], py[i], images[i].getWidth(), images[i].getHeight());
+		return atlas;
+	}
+
+	/**
+	 * Lists the PNG files in 'folder' and every folder below it, in
+	 * name order, ready for pack().
+	 *
+	 * @param folder The folder to search, e.g. images/player
+	 * @return The path of each PNG file, using '/' between folders
+	 */
+	public static List<String> findImages(String folder)
+	{
+		ArrayList<String> paths = new ArrayList<String>();
+		String [] files = new File(folder).list();
+		if (files == null) return paths;
+
+		Arrays.sort(files);
+		for (String f: files)
+		{
+			String path = folder + "/" + f;
+			if (new File(path).isDirectory())
+				paths.addAll(findImages(path));
+			else if (f.toLowerCase().endsWith(".png"))
+				paths.add(path);
+		}
+		return paths;
+	}
+
+	private void addRegion(String name, int page, int x, int y, int width, int height)
+	{
+		regions.put(name, new Region(pages.get(page), page, x, y, width, height));
+		names.add(name);
+	}
+
+	/**
+	 * Gets the packed image stored under 'name'.
+	 *
+	 * @param name The name or path the image was packed under
+	 * @return The region, or null if the atlas does not hold the image
+	 */
+	public Region getRegion(String name) { return regions.get(name); }
+
+	/**
+	 * @return The names of the packed images, in the order they were packed
+	 */
+	public List<String> getNames() { return Collections.unmodifiableList(names); }
+
+	/**
+	 * @return The number of images in the atlas
+	 */
+	public int getRegionCount() { return regions.size(); }
+
+	/**
+	 * @return The number of page images
+	 */
+	public int getPageCount() { return pages.size(); }
+
+	/**
+	 * @param i The index of a page
+	 * @return The page image
+	 */
+	public BufferedImage getPage(int i) { return pages.get(i); }
+
+	/**
+	 * Saves the atlas as the index file 'path' plus one PNG per page next
+	 * to it, named after the index, so that it can be loaded with read().
+	 *
+	 * @param path The index file to write, e.g. images/sprites.atlas
+	 * @throws IOException if a file could not be written
+	 */
+	public void write(String path) throws IOException
+	{
+		File index = new File(path);
+		String base = index.getName();
+		int dot = base.lastIndexOf('.');
+		if (dot > 0) base = base.substring(0, dot);
+
+		String [] pageFiles = new String[pages.size()];
+		for (int p=0; p<pages.size(); p++)
+		{
+			pageFiles[p] = base + p + ".png";
+			ImageIO.write(pages.get(p), "png", new File(index.getParentFile(), pageFiles[p]));
+		}
+
+		try (PrintWriter out = new PrintWriter(new FileWriter(index)))
+		{
+			out.println("# texture atlas");
+			for (String f: pageFiles)
+				out.println("page " + f);
+			out.println("// path page x y width height");
+			for (String name: names)
+			{
+				Region r = regions.get(name);
+				out.println(name + " " + r.getPageIndex() + " " + r.getPageX() + " " + r.getPageY()
+						+ " " + r.getWidth() + " " + r.getHeight());
+			}
+		}
+	}
+
+	/**
+	 * Loads an atlas saved by write().
+	 *
+	 * @param path The index file to read
+	 * @return The atlas
+	 * @throws IOException if a file could not be read or the index is not valid
+	 */
+	public static TextureAtlas read(String path) throws IOException
+	{
+		TextureAtlas atlas = new TextureAtlas();
+		File folder = new File(path).getParentFile();
+
+		try (BufferedReader in = new BufferedReader(new FileReader(path)))
+		{
+			String line;
+			int lineNo = 0;
+			while ((line = in.readLine()) != null)
+			{
+				lineNo++;
+				String trimmed = line.trim();
+				if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.startsWith("//")) continue;
+
+				String [] vals = trimmed.split(" ");
+				try
+				{
+					if (vals[0].equals("page"))
+					{
+						BufferedImage page = ImageIO.read(new File(folder, vals[1]));
+						if (page == null)
+							throw new IOException("Unable to read atlas page '" + vals[1] + "'");
+						atlas.pages.add(CompatibleImage.convert(page));
+					}
+					else
+					{
+						if (vals.length != 6)
+							throw new IOException("Bad region on line " + lineNo + " of '" + path + "'");
+						int p = Integer.parseInt(vals[1]);
+						int x = Integer.parseInt(vals[2]), y = Integer.parseInt(vals[3]);
+						int w = Integer.parseInt(vals[4]), h = Integer.parseInt(vals[5]);
+						BufferedImage page = atlas.pages.get(p);
+						if (x < 0 || y < 0 || w <= 0 || h <= 0 || x + w > page.getWidth() || y + h > page.getHeight())
+							throw new IOException("Region off its page on line " + lineNo + " of '" + path + "'");
+						atlas.addRegion(vals[0], p, x, y, w, h);
+					}
+				}
+				catch (NumberFormatException | IndexOutOfBoundsException e)
+				{
+					throw new IOException("Bad value on line " + lineNo + " of '" + path + "'", e);
+				}
+			}
+		}
+		return atlas;
+	}
+
+	/**
+	 * Builds an atlas offline. Run from the game folder with the index file
+	 * to write followed by the folders to pack, e.g.
+	 *
+	 * java game2D.TextureAtlas images/sprites.atlas images/player images/enemies
+	 *
+	 * @param args The index file, then one or more image folders
+	 */
+	public static void main(String [] args) throws IOException
+	{
+		if (args.length < 2)
+		{
+			System.err.println("usage: TextureAtlas <index file> <image folder>...");
+			return;
+		}
+
+		ArrayList<String> paths = new ArrayList<String>();
+		for (int a=1; a<args.length; a++)
+			paths.addAll(findImages(args[a]));
+
+		TextureAtlas atlas = pack(paths, DEFAULT_PAGE_SIZE);
+		atlas.write(args[0]);
+		System.out.println("packed " + atlas.getRegionCount() + " images onto " + atlas.getPageCount() + " pages");
+	}
+}
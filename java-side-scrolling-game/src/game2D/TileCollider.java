@@ -0,0 +1,188 @@
+package game2D;
+
+/**
+ * TileCollider finds where a moving box first touches a solid tile in a
+ * TileMap. The box is swept along its whole movement for the tick in one
+ * pass, so a fast sprite cannot skip over a thin wall. The sweep walks the
+ * tile grid one row or column at a time (a DDA traversal), testing only
+ * the tiles the leading edges of the box move into. The cost therefore
+ * depends on the number of tiles crossed, not on the speed in pixels.
+ *
+ * Boxes are given in pixels as a top left corner plus a width and height.
+ * Tiles the box already overlaps when the sweep starts are ignored. A box
+ * that starts just touching a tile, or within a small tolerance of it,
+ * counts as touching rather than overlapping.
+ *
+ * The results of the last sweep are kept in the collider, so nothing is
+ * allocated. Each thread should use its own collider.
+ *
+ * @author naomi lambert
+ */
+public class TileCollider {
+
+	private static final float EPSILON = 0.001f;	// Gap in pixels that still counts as touching
+
+	private boolean hit;		// true if the last sweep hit a solid tile
+	private float time;			// Fraction of the movement made before the hit
+	private int normalX;		// Direction the hit surface faces: -1, 0 or 1
+	private int normalY;
+	private float contactX;		// Where the box ends up
+	private float contactY;
+
+	/**
+	 * Sweeps a box through 'map' by 'dx','dy' and finds the first solid
+	 * tile it would run into.
+	 *
+	 * @param map		The tile map to collide with
+	 * @param x			The left edge of the box in pixels
+	 * @param y			The top edge of the box in pixels
+	 * @param width		The width of the box in pixels
+	 * @param height	The height of the box in pixels
+	 * @param dx		The distance to move in x, in pixels
+	 * @param dy		The distance to move in y, in pixels
+	 * @return true if the box hit a solid tile before moving the whole way
+	 */
+	public boolean sweep(TileMap map, float x, float y, float width, float height, float dx, float dy)
+	{
+		hit = false;
+		time = 1.0f;
+		normalX = 0;
+		normalY = 0;
+		contactX = x + dx;
+		contactY = y + dy;
+
+		if (dx == 0 && dy == 0) return false;
+
+		int tw = map.getTileWidth();
+		int th = map.getTileHeight();
+		int stepX = (dx > 0) ? 1 : (dx < 0) ? -1 : 0;
+		int stepY = (dy > 0) ? 1 : (dy < 0) ? -1 : 0;
+
+		// The next column and row the leading edges will move into,
+		// and when they get there as a fraction of the movement
+		int nextCol = 0, nextRow = 0;
+		float nextX = Float.POSITIVE_INFINITY, nextY = Float.POSITIVE_INFINITY;
+		float deltaX = Float.POSITIVE_INFINITY, deltaY = Float.POSITIVE_INFINITY;
+
+		if (stepX > 0)
+		{
+			nextCol = lastTile(x + width, tw) + 1;
+			nextX = (nextCol*tw - (x + width)) / dx;
+		}
+		else if (stepX < 0)
+		{
+			nextCol = firstTile(x, tw) - 1;
+			nextX = ((nextCol + 1)*tw - x) / dx;
+		}
+		if (stepX != 0) deltaX = tw / Math.abs(dx);
+
+		if (stepY > 0)
+		{
+			nextRow = lastTile(y + height, th) + 1;
+			nextY = (nextRow*th - (y + height)) / dy;
+		}
+		else if (stepY < 0)
+		{
+			nextRow = firstTile(y, th) - 1;
+			nextY = ((nextRow + 1)*th - y) / dy;
+		}
+		if (stepY != 0) deltaY = th / Math.abs(dy);
+
+		while (true)
+		{
+			if (nextX <= nextY)
+			{
+				if (nextX > 1.0f) return false;
+
+				// The box moves into column nextCol; work out which rows it covers
+				float top = y + dy*nextX;
+				int firstRow = (stepY < 0) ? nextRow + 1 : firstTile(top, th);
+				int lastRow = (stepY > 0) ? nextRow - 1 : lastTile(top + height, th);
+
+				for (int r=firstRow; r<=lastRow; r++)
+				{
+					if (map.isSolid(nextCol, r))
+					{
+						hit = true;
+						time = nextX;
+						normalX = -stepX;
+						contactX = (stepX > 0) ? nextCol*tw - width : (nextCol + 1)*tw;
+						contactY = top;
+						return true;
+					}
+				}
+				nextCol += stepX;
+				nextX += deltaX;
+			}
+			else
+			{
+				if (nextY > 1.0f) return false;
+
+				// The box moves into row nextRow; work out which columns it covers
+				float left = x + dx*nextY;
+				int firstCol = (stepX < 0) ? nextCol + 1 : firstTile(left, tw);
+				int lastCol = (stepX > 0) ? nextCol - 1 : lastTile(left + width, tw);
+
+				if (firstCol <= lastCol && map.firstSolidColumn(nextRow, firstCol, lastCol) >= 0)
+				{
+					hit = true;
+					time = nextY;
+					normalY = -stepY;
+					contactX = left;
+					contactY = (stepY > 0) ? nextRow*th - height : (nextRow + 1)*th;
+					return true;
+				}
+				nextRow += stepY;
+				nextY += deltaY;
+			}
+		}
+	}
+
+	/**
+	 * @return true if the last sweep hit a solid tile
+	 */
+	public boolean isHit() { return hit; }
+
+	/**
+	 * @return The fraction of the movement made before the hit, or 1 if there was none
+	 */
+	public float getTime() { return time; }
+
+	/**
+	 * @return The x direction the hit surface faces: 1 for a wall to the left
+	 * of the box, -1 for a wall to the right and 0 for a floor or ceiling
+	 */
+	public int getNormalX() { return normalX; }
+
+	/**
+	 * @return The y direction the hit surface faces: -1 for a floor, 1 for
+	 * a ceiling and 0 for a wall
+	 */
+	public int getNormalY() { return normalY; }
+
+	/**
+	 * @return The left edge of the box where the sweep stopped
+	 */
+	public float getX() { return contactX; }
+
+	/**
+	 * @return The top edge of the box where the sweep stopped
+	 */
+	public float getY() { return contactY; }
+
+	/**
+	 * @return The tile holding the low edge 'pos' of a box, allowing for rounding
+	 */
+	private static int firstTile(float pos, int size)
+	{
+		return (int)Math.floor((pos + EPSILON) / size);
+	}
+
+	/**
+	 * @return The tile holding the high edge 'pos' of a box, allowing for rounding
+	 */
+	private static int lastTile(float pos, int size)
+	{
+		return (int)Math.ceil((pos - EPSILON) / size) - 1;
+	}
+}
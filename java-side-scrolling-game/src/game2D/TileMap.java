@@ -1,15 +1,15 @@
 package game2D;
 
-import javax.swing.ImageIcon;
-
-import java.awt.Color;
-import java.awt.Dimension;
+import java.awt.AlphaComposite;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
-import java.awt.Point;
 import java.awt.Rectangle;
-import java.util.HashMap;
-import java.util.Map;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.io.*;
 
 
@@ -28,6 +28,10 @@ import java.io.*;
 #b=orangeblock.png
 #c=greencircle.png
 #g=glasses.png
+// The characters of the tiles that sprites cannot pass through can be
+// listed after #solid=. If there is no #solid line, every character
+// other than the dot is solid.
+#solid=bc
 // The actual tile map is preceded by the #map line
 #map
 bbbbbbbbbb
@@ -44,15 +48,39 @@ public class TileMap
 	// constants
 	public static final char AIR = '.';
 
-	private Tile [][] tmap;		// The tile map grid, initially null
+	// The tile map grid, one character per tile stored a row at a time, so the
+	// tile at 'x,y' is tiles[y*mapWidth + x]. Pixel coordinates are worked out
+	// from the tile coordinates rather than stored. Initially null.
+	private char [] tiles;
 	private int mapWidth=0;		// The maps width in tiles
 	private int mapHeight=0;	// The maps height in tiles
 	private int tileWidth=0;	// The width of a tile in pixels
 	private int tileHeight=0;	// The height of a tile in pixels
 	
-	// imagemap contains a set of character to image mappings for
-	// quick loop up of the image associated with a given character.
-	private Map<String,Image> imagemap = new HashMap<String,Image>();
+	// imagemap contains the image associated with each character, indexed
+	// by the character itself for quick look up. It grows to fit the
+	// largest character used.
+	private Image [] imagemap = new Image[128];
+
+	// solidChars says which tile characters are solid, indexed by character.
+	// solid holds a bit for every tile, set if the tile is solid, a row at a
+	// time: bit x%64 of word y*solidWords + x/64 is tile 'x,y'. It lets the
+	// collision queries test up to 64 tiles at once.
+	private boolean [] solidChars = new boolean[128];
+	private long [] solid;
+	private int solidWords=0;	// The number of words used for each row
+
+	// Optional cache of pre-rendered blocks of tiles, see setChunkCache()
+	private int chunkSize=0;			// Width and height of a chunk in tiles, 0 if not caching
+	private int maxChunks=0;			// The most chunk images to keep at once
+	private int chunksWide=0;			// The map's width in chunks
+	private int chunksHigh=0;			// The map's height in chunks
+	private BufferedImage [] chunks;	// Chunk images a row at a time, null if not resident
+	private boolean [] chunkStale;		// true if a chunk's tiles have changed since it was drawn
+	private long [] chunkUsed;			// The draw call each chunk was last used in
+	private int residentChunks=0;		// The number of chunk images held
+	private long draws=0;				// The number of draw calls so far
+	private long chunkBakes=0;			// The number of times a chunk has been drawn into its image
 	
 	/**
 	 * @return The map height in tiles
@@ -105,6 +133,21 @@ public class TileMap
 	 * @return true if the map loaded successfully, false otherwise
 	 */
 	public boolean loadMap(String folder, String mapfile)
+	{
+		return loadMap(folder, mapfile, null);
+	}
+
+	/**
+	 * Loads a 'mapfile' that is contained in the given 'folder', taking its
+	 * tile images from 'assets' so that images already loaded, or being
+	 * loaded in the background, are not read again.
+	 *  
+	 * @param folder The folder the tile map and images are located in
+	 * @param mapfile The name of the map file in the map folder
+	 * @param assets The cache to get the tile images from, or null to read them directly
+	 * @return true if the map loaded successfully, false otherwise
+	 */
+	public boolean loadMap(String folder, String mapfile, AssetCache assets)
 	{
 		// Create a full path to the tile map by sticking the folder and mapfile together
 		String path = folder + "/" + mapfile;
@@ -117,8 +160,10 @@ public class TileMap
 			String trimmed="";
 			String [] vals;
 			
-			// First we need to clear out the old image map
-			imagemap.clear();
+			// First we need to clear out the old image map and tile properties
+			Arrays.fill(imagemap, null);
+			Arrays.fill(solidChars, false);
+			boolean solidListed = false;
 			
 			// Read the first line of the tile map to find out
 			// the relevant dimensions of the map plus the tiles
@@ -147,18 +192,25 @@ public class TileMap
 				// Break out of the loop if we find the map
 				if (trimmed.startsWith("#map")) break;
 				
-				if (trimmed.charAt(0) == '#') // Look for a character to image map
+				if (trimmed.startsWith("#solid=")) // Look for the list of solid tiles
+				{
+					solidListed = true;
+					for (int i=7; i<trimmed.length(); i++)
+						setSolidChar(trimmed.charAt(i), true);
+				}
+				else if (trimmed.charAt(0) == '#') // Look for a character to image map
 				{
 					// Extract the character
 					
-					String ch = "" + trimmed.charAt(1);
+					char ch = trimmed.charAt(1);
 					// and it's file name
 					String fileName = trimmed.substring(3,trimmed.length());
 					
-					Image img  = new ImageIcon(folder + "/" + fileName).getImage();
+					String imagePath = folder + "/" + fileName;
+					Image img = (assets != null) ? assets.getImage(imagePath) : CompatibleImage.load(imagePath);
 					// Now add this character->image mapping to the map
 					if (img != null)
-						imagemap.put(ch,img);
+						setTileImage(ch,img);
 					else
 						System.err.println("Failed to load image '" + folder + "/" + fileName + "'");
 				}
@@ -167,7 +219,9 @@ public class TileMap
 			// Check the map dimensione are at least > 0
 			if ((mapWidth > 0) && (mapHeight > 0))
 			{
-				tmap = new Tile[mapWidth][mapHeight]; 
+				tiles = new char[mapWidth * mapHeight];
+				Arrays.fill(tiles, AIR);
+				resetChunks();
 			}
 			else
 			{
@@ -190,12 +244,19 @@ public class TileMap
 						continue;
 					}
 					
-					for (int col=0; col<mapWidth && col<line.length(); col++)
-						tmap[col][row] = new Tile(line.charAt(col),col*tileWidth,row*tileHeight);
+					line.getChars(0, mapWidth, tiles, row*mapWidth);
 					row++;
 					
 					if (row >= mapHeight) break;
 				}
+
+				// Without a list of solid tiles, everything but air is solid
+				if (!solidListed)
+				{
+					for (char ch : tiles)
+						if (ch != AIR) setSolidChar(ch, true);
+				}
+				buildSolid();
 			}
 			
 			in.close();
@@ -216,6 +277,33 @@ public class TileMap
 		return true;
 	}
 	
+	/**
+	 * Lists the tile images used by a 'mapfile' in 'folder' without loading
+	 * the map, e.g. so that they can be loaded ahead of it.
+	 *
+	 * @param folder The folder the tile map and images are located in
+	 * @param mapfile The name of the map file in the map folder
+	 * @return The paths of the tile images
+	 * @throws IOException if the map file cannot be read
+	 */
+	public static ArrayList<String> listImages(String folder, String mapfile) throws IOException
+	{
+		ArrayList<String> paths = new ArrayList<String>();
+		try (BufferedReader in = new BufferedReader(new FileReader(folder + "/" + mapfile)))
+		{
+			String line = in.readLine();	// Skip the header
+			while ((line = in.readLine()) != null)
+			{
+				String trimmed = line.trim();
+				if (trimmed.startsWith("#map")) break;
+				if (trimmed.startsWith("//") || trimmed.startsWith("#solid=")) continue;
+				if (trimmed.length() > 3 && trimmed.charAt(0) == '#')
+					paths.add(folder + "/" + trimmed.substring(3));
+			}
+		}
+		return paths;
+	}
+
 	/**
 	 * Generate the tile map as a String so we can inspect its current state
 	 */
@@ -225,7 +313,7 @@ public class TileMap
 		for (int r=0; r<mapHeight; r++)
 		{
 			for (int c=0; c<mapWidth; c++)
-				s.append(tmap[c][r].getCharacter());
+				s.append(tiles[r*mapWidth + c]);
 	
 			s.append('\n');
 		}
@@ -242,11 +330,22 @@ public class TileMap
 	public Image getTileImage(int x, int y)
 	{
 		if (!valid(x,y)) return null;
-		Tile t = tmap[x][y];
-		if (t == null) return null;
-		char ch = t.getCharacter();
+		char ch = tiles[y*mapWidth + x];
 		if (ch == '.') return null; // Blank space
-		return imagemap.get(ch + "");
+		return (ch < imagemap.length) ? imagemap[ch] : null;
+	}
+
+	/**
+	 * Sets the image drawn for tiles with the character 'ch'
+	 * 
+	 * @param ch The tile character
+	 * @param img The image to draw for it
+	 */
+	private void setTileImage(char ch, Image img)
+	{
+		if (ch >= imagemap.length)
+			imagemap = Arrays.copyOf(imagemap, ch + 1);
+		imagemap[ch] = img;
 	}
 	
 	/**
@@ -259,7 +358,7 @@ public class TileMap
 	public int getTileXC(int x, int y)
 	{
 		if (!valid(x,y)) return 0;
-		return tmap[x][y].getXC();
+		return x * tileWidth;
 	}
 	
 	/**
@@ -272,7 +371,7 @@ public class TileMap
 	public int getTileYC(int x, int y)
 	{
 		if (!valid(x,y)) return 0;
-		return tmap[x][y].getYC();
+		return y * tileHeight;
 	}
 	
 	/**
@@ -297,7 +396,8 @@ public class TileMap
 	public boolean setTileChar(char ch, int x, int y)
 	{
 		if (!valid(x,y)) return false;
-		tmap[x][y].setCharacter(ch);
+		tiles[y*mapWidth + x] = ch;
+		tileChanged(x, y);
 		return true;
 	}
 	
@@ -311,11 +411,13 @@ public class TileMap
 	public char getTileChar(int x, int y)
 	{
 		if (!valid(x,y)) return '?';
-		return tmap[x][y].getCharacter();
+		return tiles[y*mapWidth + x];
 	}
 
 	/**
-	 * Gets the tile object at position 'x,y'
+	 * Gets the tile object at position 'x,y'. Tiles are not stored as
+	 * objects, so this creates a Tile that reads and writes the map's
+	 * character for position 'x,y'; changing its character changes the map.
 	 * 
 	 * @param x The x tile coordinate (in tiles, not pixels)
 	 * @param y The y tile coordinate (in tiles, not pixels)
@@ -324,11 +426,38 @@ public class TileMap
 	public Tile getTile(int x, int y)
 	{
 		if (!valid(x,y)) return null;
-		return tmap[x][y];
+		return new MapTile(x, y);
+	}
+
+	/**
+	 * A Tile backed by a position in the map's character grid
+	 */
+	private class MapTile extends Tile
+	{
+		private char [] grid;	// The map's tiles array when the tile was made
+		private int index;		// Position of the tile in the array
+
+		MapTile(int x, int y)
+		{
+			super(tiles[y*mapWidth + x], x*tileWidth, y*tileHeight);
+			grid = tiles;
+			index = y*mapWidth + x;
+		}
+
+		public char getCharacter() {
+			return grid[index];
+		}
+
+		public void setCharacter(char character) {
+			grid[index] = character;
+			if (grid == tiles) tileChanged(index % mapWidth, index / mapWidth);
+		}
 	}
 	
 	/**
-	 * Draws the tile map to the graphics device pointed to by 'g'.
+	 * Draws the tile map to the graphics device pointed to by 'g'. Only
+	 * the tiles that overlap the clip rectangle of 'g' are visited, so the
+	 * cost depends on the size of the screen rather than the size of the map.
 	 * 
 	 * @param g The graphics device to draw to
 	 * @param xoff The xoffset to shift the tile map by
@@ -336,31 +465,364 @@ public class TileMap
 	 */
 	public void draw(Graphics2D g, int xoff, int yoff)
 	{
-		if (g == null) return;
+		if (g == null || tiles == null) return;
 	
 		Image img=null;
-		Rectangle rect = (Rectangle)g.getClip();
+		Rectangle rect = g.getClipBounds();
 		int xc,yc;
+
+		// Work out the range of rows and columns that are on screen
+		int firstCol = 0, lastCol = mapWidth-1;
+		int firstRow = 0, lastRow = mapHeight-1;
+		if (rect != null)
+		{
+			if (rect.width <= 0 || rect.height <= 0) return;
+			firstCol = Math.max(firstCol, Math.floorDiv(rect.x - xoff, tileWidth));
+			lastCol = Math.min(lastCol, Math.floorDiv(rect.x + rect.width - 1 - xoff, tileWidth));
+			firstRow = Math.max(firstRow, Math.floorDiv(rect.y - yoff, tileHeight));
+			lastRow = Math.min(lastRow, Math.floorDiv(rect.y + rect.height - 1 - yoff, tileHeight));
+		}
+		if (firstCol > lastCol || firstRow > lastRow) return;
+
+		if (chunks != null)
+		{
+			drawChunks(g, xoff, yoff, firstCol, lastCol, firstRow, lastRow);
+			return;
+		}
 		
-		for (int r=0; r<mapHeight; r++)
+		for (int r=firstRow; r<=lastRow; r++)
 		{
-			for (int c=0; c<mapWidth; c++)
+			int row = r*mapWidth;
+			yc = yoff + r*tileHeight;
+			for (int c=firstCol; c<=lastCol; c++)
 			{
-				img = getTileImage(c, r);
+				char ch = tiles[row + c];
+				if (ch == AIR || ch >= imagemap.length) continue;
+				img = imagemap[ch];
 				if (img == null) continue;
 				xc = xoff + c*tileWidth;
-				yc = yoff + r*tileHeight;
-				
-				// Only draw the tile if it is on screen, otherwise go back round the loop
-				if (xc+tileWidth < 0 || xc >= rect.x + rect.width) continue;
-				if (yc+tileHeight < 0 || yc >= rect.y + rect.height) continue;
 				g.drawImage(img,xc,yc,null);
-				g.setColor(Color.white);
 				//g.drawRect(xc, yc, img.getWidth(null), img.getHeight(null));
 			}
 		}		
 	}
 	
+	/**
+	 * Turns on drawing the map from a cache of pre-rendered chunks. The
+	 * map is split into square chunks of 'chunkTiles' tiles, and each chunk
+	 * is drawn into its own image the first time it is on screen. After
+	 * that, drawing it costs one drawImage rather than one per tile. At most
+	 * 'maxResident' chunk images are kept. When another one is needed, the
+	 * least recently drawn is dropped. Changing a tile only causes its own
+	 * chunk to be drawn again.
+	 * 
+	 * @param chunkTiles	The width and height of a chunk in tiles, or 0 to turn the cache off
+	 * @param maxResident	The most chunk images to keep at once
+	 */
+	public void setChunkCache(int chunkTiles, int maxResident)
+	{
+		chunkSize = Math.max(0, chunkTiles);
+		maxChunks = Math.max(1, maxResident);
+		resetChunks();
+	}
+
+	/**
+	 * @return true if the map is drawn from a cache of pre-rendered chunks
+	 */
+	public boolean isChunkCached() {
+		return chunks != null;
+	}
+
+	/**
+	 * @return The number of chunk images currently held
+	 */
+	public int getResidentChunks() {
+		return residentChunks;
+	}
+
+	/**
+	 * @return The number of times a chunk has been drawn into its image
+	 */
+	public long getChunkBakes() {
+		return chunkBakes;
+	}
+
+	/**
+	 * Drops all chunk images and sizes the cache to the current map.
+	 */
+	private void resetChunks()
+	{
+		if (chunks != null)
+		{
+			for (BufferedImage chunk : chunks)
+				if (chunk != null) chunk.flush();
+		}
+		chunks = null;
+		chunkStale = null;
+		chunkUsed = null;
+		residentChunks = 0;
+
+		if (chunkSize == 0 || tiles == null) return;
+
+		chunksWide = (mapWidth + chunkSize - 1) / chunkSize;
+		chunksHigh = (mapHeight + chunkSize - 1) / chunkSize;
+		chunks = new BufferedImage[chunksWide * chunksHigh];
+		chunkStale = new boolean[chunks.length];
+		chunkUsed = new long[chunks.length];
+	}
+
+	/**
+	 * Updates the solid bit of tile 'x,y' and marks its chunk as needing
+	 * to be drawn again, after its character has changed.
+	 */
+	private void tileChanged(int x, int y)
+	{
+		if (solid != null)
+		{
+			int word = y*solidWords + (x >>> 6);
+			if (isSolidChar(tiles[y*mapWidth + x]))
+				solid[word] |= 1L << x;
+			else
+				solid[word] &= ~(1L << x);
+		}
+
+		if (chunks == null) return;
+		chunkStale[(y / chunkSize) * chunksWide + x / chunkSize] = true;
+	}
+
+	/**
+	 * Draws the chunks covering the given range of tiles, baking any
+	 * that are missing or out of date.
+	 */
+	private void drawChunks(Graphics2D g, int xoff, int yoff, int firstCol, int lastCol, int firstRow, int lastRow)
+	{
+		draws++;
+		int chunkWidth = chunkSize*tileWidth;
+		int chunkHeight = chunkSize*tileHeight;
+
+		for (int cy=firstRow/chunkSize; cy<=lastRow/chunkSize; cy++)
+		{
+			for (int cx=firstCol/chunkSize; cx<=lastCol/chunkSize; cx++)
+			{
+				int i = cy*chunksWide + cx;
+				chunkUsed[i] = draws;
+				if (chunks[i] == null || chunkStale[i]) bakeChunk(i, cx, cy);
+				g.drawImage(chunks[i], xoff + cx*chunkWidth, yoff + cy*chunkHeight, null);
+			}
+		}
+	}
+
+	/**
+	 * Draws the tiles of chunk 'cx,cy' into its image, making room for
+	 * a new image if it does not have one.
+	 */
+	private void bakeChunk(int i, int cx, int cy)
+	{
+		int width = chunkSize*tileWidth;
+		int height = chunkSize*tileHeight;
+
+		if (chunks[i] == null)
+		{
+			if (residentChunks >= maxChunks) evictChunk();
+			chunks[i] = createChunkImage(width, height);
+			residentChunks++;
+		}
+
+		Graphics2D cg = chunks[i].createGraphics();
+		cg.setComposite(AlphaComposite.Clear);
+		cg.fillRect(0, 0, width, height);
+		cg.setComposite(AlphaComposite.SrcOver);
+
+		int lastCol = Math.min(mapWidth, (cx+1)*chunkSize);
+		int lastRow = Math.min(mapHeight, (cy+1)*chunkSize);
+		for (int r=cy*chunkSize; r<lastRow; r++)
+		{
+			for (int c=cx*chunkSize; c<lastCol; c++)
+			{
+				Image img = getTileImage(c, r);
+				if (img != null)
+					cg.drawImage(img, (c - cx*chunkSize)*tileWidth, (r - cy*chunkSize)*tileHeight, null);
+			}
+		}
+		cg.dispose();
+
+		chunkStale[i] = false;
+		chunkBakes++;
+	}
+
+	/**
+	 * Drops the least recently drawn chunk image, leaving any that have
+	 * been drawn in the current draw call.
+	 */
+	private void evictChunk()
+	{
+		int oldest = -1;
+		for (int i=0; i<chunks.length; i++)
+		{
+			if (chunks[i] == null || chunkUsed[i] == draws) continue;
+			if (oldest < 0 || chunkUsed[i] < chunkUsed[oldest]) oldest = i;
+		}
+		if (oldest < 0) return;	// everything held is on screen, so go over budget
+
+		chunks[oldest].flush();
+		chunks[oldest] = null;
+		residentChunks--;
+	}
+
+	/**
+	 * Creates a transparent image for a chunk, in a format that is quick
+	 * to draw to the screen when there is one.
+	 */
+	private static BufferedImage createChunkImage(int width, int height)
+	{
+		if (!GraphicsEnvironment.isHeadless())
+		{
+			GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+					.getDefaultScreenDevice().getDefaultConfiguration();
+			return gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+		}
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+	}
+
+	/**
+	 * Sets whether tiles with the character 'ch' are solid, updating any
+	 * tiles in the map that use it.
+	 * 
+	 * @param ch The tile character
+	 * @param isSolid true if sprites cannot pass through the tile
+	 */
+	public void setSolid(char ch, boolean isSolid)
+	{
+		setSolidChar(ch, isSolid);
+		buildSolid();
+	}
+
+	/**
+	 * @param ch A tile character
+	 * @return true if tiles with the character 'ch' are solid
+	 */
+	public boolean isSolidChar(char ch)
+	{
+		return ch < solidChars.length && solidChars[ch];
+	}
+
+	/**
+	 * Checks whether the tile at position 'x,y' is solid
+	 * 
+	 * @param x The x tile coordinate (in tiles, not pixels)
+	 * @param y The y tile coordinate (in tiles, not pixels)
+	 * @return true if the tile is solid, false if it is not or is off the map
+	 */
+	public boolean isSolid(int x, int y)
+	{
+		if (!valid(x,y)) return false;
+		return (solid[y*solidWords + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	/**
+	 * Finds the first solid tile in part of a row, searching from column
+	 * 'fromCol' towards column 'toCol' (both included). If 'fromCol' is
+	 * greater than 'toCol' the search goes from right to left. Columns
+	 * off the map are not solid.
+	 * 
+	 * @param row The y tile coordinate of the row
+	 * @param fromCol The x tile coordinate to start at
+	 * @param toCol The x tile coordinate to stop at
+	 * @return The x tile coordinate of the first solid tile, or -1 if there is none
+	 */
+	public int firstSolidColumn(int row, int fromCol, int toCol)
+	{
+		if (row < 0 || row >= mapHeight || solid == null) return -1;
+		int base = row*solidWords;
+
+		if (fromCol <= toCol)
+		{
+			fromCol = Math.max(fromCol, 0);
+			toCol = Math.min(toCol, mapWidth-1);
+			if (fromCol > toCol) return -1;
+
+			int w = fromCol >>> 6;
+			int last = toCol >>> 6;
+			long bits = solid[base + w] & (-1L << fromCol);
+			while (true)
+			{
+				if (w == last) bits &= -1L >>> (63 - (toCol & 63));
+				if (bits != 0) return (w << 6) + Long.numberOfTrailingZeros(bits);
+				if (w == last) return -1;
+				bits = solid[base + ++w];
+			}
+		}
+		else
+		{
+			fromCol = Math.min(fromCol, mapWidth-1);
+			toCol = Math.max(toCol, 0);
+			if (fromCol < toCol) return -1;
+
+			int w = fromCol >>> 6;
+			int last = toCol >>> 6;
+			long bits = solid[base + w] & (-1L >>> (63 - (fromCol & 63)));
+			while (true)
+			{
+				if (w == last) bits &= -1L << toCol;
+				if (bits != 0) return (w << 6) + 63 - Long.numberOfLeadingZeros(bits);
+				if (w == last) return -1;
+				bits = solid[base + --w];
+			}
+		}
+	}
+
+	/**
+	 * Checks whether any solid tile overlaps a rectangle given in pixels.
+	 * Parts of the rectangle off the map are not solid.
+	 * 
+	 * @param x The left edge of the rectangle in pixels
+	 * @param y The top edge of the rectangle in pixels
+	 * @param width The width of the rectangle in pixels
+	 * @param height The height of the rectangle in pixels
+	 * @return true if a solid tile overlaps the rectangle
+	 */
+	public boolean anySolidInRect(float x, float y, float width, float height)
+	{
+		if (width <= 0 || height <= 0) return false;
+
+		int firstCol = (int)Math.floor(x / tileWidth);
+		int lastCol = (int)Math.ceil((x + width) / tileWidth) - 1;
+		int firstRow = Math.max(0, (int)Math.floor(y / tileHeight));
+		int lastRow = Math.min(mapHeight-1, (int)Math.ceil((y + height) / tileHeight) - 1);
+
+		for (int r=firstRow; r<=lastRow; r++)
+			if (firstSolidColumn(r, firstCol, lastCol) >= 0) return true;
+		return false;
+	}
+
+	/**
+	 * Records whether the character 'ch' is solid, without updating the map.
+	 */
+	private void setSolidChar(char ch, boolean isSolid)
+	{
+		if (ch >= solidChars.length)
+			solidChars = Arrays.copyOf(solidChars, ch + 1);
+		solidChars[ch] = isSolid;
+	}
+
+	/**
+	 * Rebuilds the solid tile bits from the map's characters.
+	 */
+	private void buildSolid()
+	{
+		if (tiles == null) return;
+
+		solidWords = (mapWidth + 63) >>> 6;
+		solid = new long[solidWords * mapHeight];
+		for (int y=0; y<mapHeight; y++)
+		{
+			int row = y*mapWidth;
+			for (int x=0; x<mapWidth; x++)
+				if (isSolidChar(tiles[row + x]))
+					solid[y*solidWords + (x >>> 6)] |= 1L << x;
+		}
+	}
+
 	/**
 	 * Returns the boudning rect of the given tile at tiles[x][y]
 	 * @param x
@@ -368,6 +830,20 @@ public class TileMap
 	 * @return
 	 */
 	public Rectangle getTileBoundingRect(int x, int y) {
-		return new Rectangle(new Point(this.getTileXC(x, y), this.getTileYC(x, y)), new Dimension(this.tileWidth, this.tileHeight));
+		return getTileBoundingRect(x, y, new Rectangle());
+	}
+
+	/**
+	 * Sets 'r' to the bounding rect of the tile at tiles[x][y], so that one
+	 * Rectangle can be reused rather than allocating a new one per tile.
+	 * 
+	 * @param x The x tile coordinate
+	 * @param y The y tile coordinate
+	 * @param r The rectangle to fill in
+	 * @return 'r'
+	 */
+	public Rectangle getTileBoundingRect(int x, int y, Rectangle r) {
+		r.setBounds(getTileXC(x, y), getTileYC(x, y), tileWidth, tileHeight);
+		return r;
 	}
 }
@@ -0,0 +1,65 @@
+package game2D;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock free triple buffer for handing data from one producer thread to
+ * one consumer thread. The producer fills the write buffer and publishes
+ * it; the consumer always gets the most recently published buffer. Neither
+ * side ever waits for the other: the third buffer sits between them so that
+ * the producer can start on a new buffer while the consumer is still
+ * reading the previous one. Buffers are reused, so nothing is allocated
+ * once the buffer has been created.
+ *
+ * @author naomi lambert
+ */
+public class TripleBuffer<T> {
+
+	private static final int INDEX = 3;		// Bits holding the index of the middle buffer
+	private static final int FRESH = 4;		// Set when the middle buffer has not been read yet
+
+	private final List<T> buffers;
+	private AtomicInteger middle;	// Index of the buffer between the threads, plus the FRESH flag
+	private int write;				// Index of the buffer owned by the producer
+	private int read;				// Index of the buffer owned by the consumer
+
+	/**
+	 * Create a triple buffer over the three given objects. The first is
+	 * what the consumer sees until something has been published.
+	 */
+	public TripleBuffer(T first, T second, T third)
+	{
+		buffers = List.of(first, second, third);
+		read = 0;
+		middle = new AtomicInteger(1);
+		write = 2;
+	}
+
+	/**
+	 * @return The buffer the producer should fill before calling publish()
+	 */
+	public T getWriteBuffer() { return buffers.get(write); }
+
+	/**
+	 * Makes the write buffer available to the consumer and gives the
+	 * producer a new buffer to fill. Only call from the producer thread.
+	 */
+	public void publish()
+	{
+		write = middle.getAndSet(write | FRESH) & INDEX;
+	}
+
+	/**
+	 * Gets the most recently published buffer. The consumer may keep using
+	 * it until its next call to getLatest(). Only call from the consumer thread.
+	 *
+	 * @return The latest buffer published by the producer
+	 */
+	public T getLatest()
+	{
+		if ((middle.get() & FRESH) != 0)
+			read = middle.getAndSet(read) & INDEX;
+		return buffers.get(read);
+	}
+}
@@ -4,10 +4,14 @@ import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Iterator;
-import javax.swing.ImageIcon;
+import java.util.Random;
 
 import game2D.*;
 
@@ -24,15 +28,17 @@ import game2D.*;
  * @author naomi lambert
  *
  */
-@SuppressWarnings("serial")
-
-public class Game extends GameCore 
+public class Game extends GameCore implements InputQueue.Handler
 {
 
 	// Useful game constants
 	private static final int SCREEN_WIDTH = 900;
 	private static final int SCREEN_HEIGHT = 700;
 	private static final float	GRAVITY = 0.001f;
+	private static final int TICK_RATE = 100;	// simulation ticks per second
+	private static final int COLLISION_INSET = 5;	// pixels trimmed from the left of a creature's collision box
+	private static final String SPRITE_ATLAS = "images/sprites.atlas";	// optional atlas built offline by TextureAtlas
+	private static final String [] LEVEL_MUSIC = { "sounds/music.wav", "sounds/music.wav" };	// the track for each level
 
 	// Game state flags
 	private boolean paused = false;
@@ -40,6 +46,7 @@ public class Game extends GameCore
 	private boolean leftIsPressed = false;
 	private boolean rightIsPressed = false;
 	private boolean attackIsPressed = false;
+	private boolean showFrameStats = false;	// draw the frame time overlay
 
 	private int level = 0;
 
@@ -51,57 +58,300 @@ public class Game extends GameCore
 	private ArrayList<PowerUp> crystals = new ArrayList<PowerUp>();
 	private PowerUp.Goal treasure;
 
-	//preloaded sound
-	private Sound music = new Sound("sounds/music.wav");
+	//sound effects, decoded once and mixed onto one audio line
+	private SoundEngine sounds = new SoundEngine(8);
+
+	//background music, streamed from file onto the same line
+	private MusicPlayer music = new MusicPlayer(sounds.getMixer());
+	private int enemyHurtSound;
+	private int gameOverSound;
+	private int goalSound;
 
 	//maps
 	private TileMap tmapLevel1 = new TileMap();	// level 1 map
 	private TileMap tmapLevel2 = new TileMap(); // level 2 map
 	private TileMap currentLevelMap; //
 
-	private ArrayList<Sprite> visibleSprites = new ArrayList<Sprite>();
+	// the sprites the player can collide with, in a grid of tile sized cells
+	// or, with '--sap', sorted along x by a sweep and prune
+	private Broadphase visibleSprites;
+	private boolean sweepAndPrune = false;
+	private ArrayList<Sprite> candidates = new ArrayList<Sprite>();	// results of the latest broadphase query
+
+	private TileCollider collider = new TileCollider();	// finds where creatures hit the map
+
+	private AssetCache assets = new AssetCache();	// images and animations shared between sprites
+	private AssetLoader loader = new AssetLoader(assets);	// decodes the images on background threads
+	private AssetLoader.Batch levelAssets;			// the images needed before level 1 can start
+	private volatile boolean loaded = false;		// true once the game has been set up and can be played
+	private AnimationSystem animations = new AnimationSystem();	// advances the creatures' animations together
 
 	// background images
-	private Image backgroundLevel1;
-	private Image backgroundLevel2;
+	private static final String [] LEVEL_BACKGROUNDS = { "images/level1Background.png", "images/level2Background.png" };
 	private Image background;
 
 	private long total;    //game score
 
+	// Input and randomness, kept reproducible so sessions can be replayed
+	private InputQueue input = new InputQueue();	// events waiting for the next update
+	private long seed = System.nanoTime();			// seed for all of the game's randomness
+	private Random random = new Random(seed);
+	private long tick = 0;							// number of updates so far
+	private InputRecording recording;				// the session being recorded, if any
+	private String recordingPath;					// where to save the recording
+	private InputRecording replay;					// the session being replayed, if any
+
 	/**
 	 * The obligatory main method that creates
 	 * an instance of our class and starts it running
 	 * 
-	 * @param args	The list of parameters this program might use (ignored)
+	 * @param args	The list of parameters this program might use. Passing
+	 * 				'--headless [ticks]' runs the game without a window for
+	 * 				the given number of ticks and reports the throughput;
+	 * 				adding '--nodraw' skips drawing as well. Passing
+	 * 				'--threaded' simulates and draws on separate threads.
+	 * 				Passing '--record file' saves the session's input to
+	 * 				'file' when the game is quit, and '--replay file' runs
+	 * 				a recorded session headlessly (see runReplay).
+	 * 				Passing '--sap' finds collisions with a sweep and
+	 * 				prune instead of the spatial hash.
 	 */
 	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals("--headless")) {
+			runHeadless(args);
+			return;
+		}
+		if (args.length > 1 && args[0].equals("--replay")) {
+			runReplay(args);
+			return;
+		}
+
 		Game gct = new Game();
-		gct.init();
+		boolean threaded = false;
+		for (int a = 0; a < args.length; a++) {
+			if (args[a].equals("--threaded"))
+				threaded = true;
+			else if (args[a].equals("--sap"))
+				gct.sweepAndPrune = true;
+			else if (args[a].equals("--record") && a + 1 < args.length)
+				gct.recordingPath = args[++a];
+		}
+
+		//load in the background so the window opens straight away and
+		//shows the progress; update() finishes setting up once it is done
+		gct.startLoading();
+
+		// Simulate in fixed ticks so physics does not depend on the frame rate
+		gct.setTickRate(TICK_RATE);
+		gct.setFixedTimestep(true);
+		gct.setThreadedRendering(threaded);
+
+		if (gct.recordingPath != null)
+			gct.recording = new InputRecording(gct.seed, gct.getTickMillis());
 
 		// Start in windowed mode with the given screen height and width
 		gct.run(false,SCREEN_WIDTH,SCREEN_HEIGHT);
 
 	} //main
 
+	/**
+	 * Runs the game without a window for a number of ticks as fast as
+	 * possible and prints the throughput
+	 * 
+	 * @param args - the command line arguments given to main
+	 */
+	private static void runHeadless(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+
+		int ticks = 10000;
+		boolean draw = true;
+		for (int a = 1; a < args.length; a++) {
+			if (args[a].equals("--nodraw"))
+				draw = false;
+			else
+				ticks = Integer.parseInt(args[a]);
+		}
+
+		Game gct = new Game();
+		HeadlessRunner runner = new HeadlessRunner(gct, SCREEN_WIDTH, SCREEN_HEIGHT);
+		runner.setDrawing(draw);
+		gct.init();
+		gct.setTickRate(TICK_RATE);
+
+		long nanos = runner.run(ticks, gct.getTickMillis());
+		runner.dispose();
+
+		System.out.printf("%d ticks in %.1f ms (%.1f ticks/s, %.1f us/tick)%n",
+				ticks, nanos / 1e6, ticks / (nanos / 1e9), nanos / 1e3 / ticks);
+		FrameStats stats = runner.getFrameStats();
+		System.out.println(stats.summary(FrameStats.UPDATE));
+		if (draw) System.out.println(stats.summary(FrameStats.DRAW));
+		System.out.println(gct.assets.summary());
+		System.out.println(gct.sounds.summary());
+		System.exit(0);
+	} //runHeadless
+
+	/**
+	 * Replays a session saved with '--record' headlessly, as fast as
+	 * possible, and prints the update and draw times of its ticks. The
+	 * arguments after the recording file can be:
+	 * 
+	 * '--nodraw' to time the updates only,
+	 * '--timings file' to write the time of every tick to a CSV file,
+	 * '--max-p99 ms' to exit with status 1 if the 99th percentile tick
+	 * time is over the given budget, so that replays of committed sessions
+	 * can catch frame time regressions,
+	 * '--sap' to find collisions with a sweep and prune.
+	 * 
+	 * @param args - the command line arguments given to main
+	 */
+	private static void runReplay(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+
+		boolean draw = true;
+		boolean sweepAndPrune = false;
+		String timingsPath = null;
+		double maxP99 = 0;
+		for (int a = 2; a < args.length; a++) {
+			if (args[a].equals("--nodraw"))
+				draw = false;
+			else if (args[a].equals("--timings") && a + 1 < args.length)
+				timingsPath = args[++a];
+			else if (args[a].equals("--max-p99") && a + 1 < args.length)
+				maxP99 = Double.parseDouble(args[++a]);
+			else if (args[a].equals("--sap"))
+				sweepAndPrune = true;
+		}
+
+		InputRecording rec;
+		try {
+			rec = InputRecording.load(args[1]);
+		} catch (IOException e) {
+			System.err.println("Unable to load recording: " + e.getMessage());
+			System.exit(2);
+			return;
+		}
+
+		Game gct = new Game();
+		gct.setSeed(rec.getSeed());
+		gct.replay = rec;
+		gct.sweepAndPrune = sweepAndPrune;
+
+		HeadlessRunner runner = new HeadlessRunner(gct, SCREEN_WIDTH, SCREEN_HEIGHT);
+		runner.setDrawing(draw);
+		runner.setStatsWindow((int)Math.max(1, rec.getTicks()));
+		gct.init();
+
+		FrameStats stats = runner.getFrameStats();
+		PrintWriter timings = null;
+		try {
+			if (timingsPath != null) {
+				timings = new PrintWriter(new FileWriter(timingsPath));
+				timings.println("tick,update_us,draw_us");
+			}
+
+			long start = System.nanoTime();
+			for (long t = 1; t <= rec.getTicks(); t++) {
+				runner.tick(rec.getTickMillis());
+				if (timings != null)
+					timings.printf("%d,%.1f,%.1f%n", t,
+							stats.getHistogram(FrameStats.UPDATE).getLast() / 1e3,
+							stats.getHistogram(FrameStats.DRAW).getLast() / 1e3);
+			}
+			long nanos = System.nanoTime() - start;
+
+			System.out.printf("replayed %d ticks, %d events in %.1f ms%n",
+					rec.getTicks(), rec.getEventCount(), nanos / 1e6);
+		} catch (IOException e) {
+			System.err.println("Unable to write timings: " + e.getMessage());
+		} finally {
+			if (timings != null) timings.close();
+			runner.dispose();
+		}
+
+		System.out.println(stats.summary(FrameStats.UPDATE));
+		if (draw) System.out.println(stats.summary(FrameStats.DRAW));
+		System.out.println(stats.summary(FrameStats.FRAME));
+		System.out.println(gct.assets.summary());
+		System.out.println(gct.sounds.summary());
+
+		double p99 = stats.getHistogram(FrameStats.FRAME).getPercentile(0.99) / 1e6;
+		if (maxP99 > 0 && p99 > maxP99) {
+			System.err.printf("p99 tick time %.2f ms is over the budget of %.2f ms%n", p99, maxP99);
+			System.exit(1);
+		}
+		System.exit(0);
+	} //runReplay
+
 	/**
 	 * Initialise the class, e.g. set up variables, load images,
-	 * create animations, register event handlers
+	 * create animations, register event handlers. Waits for the
+	 * images to load, so the game is ready to play when it returns.
 	 */
 	public void init()
-	{   
+	{
+		startLoading();
+		levelAssets.join();
+		finishLoading();
+	} //init
 
-		//load background images
-		backgroundLevel1 = new ImageIcon("images/level1Background.png").getImage();
-		backgroundLevel2 = new ImageIcon("images/level2Background.png").getImage();
-		background = backgroundLevel1; //set intial background image
+	/**
+	 * Starts loading the game's images on the loader's threads. The
+	 * images level 1 needs are asked for first, in levelAssets; level 2's
+	 * follow in a later batch and carry on loading while level 1 is played.
+	 */
+	public void startLoading()
+	{
+		ArrayList<String> first = new ArrayList<String>();
+		ArrayList<String> later = new ArrayList<String>();
+		try {
+			first.add(LEVEL_BACKGROUNDS[0]);
+			first.addAll(TileMap.listImages("maps", "level1.txt"));
+			//frames packed offline are read with the atlas instead
+			if (!new File(SPRITE_ATLAS).exists())
+				first.addAll(creatureFrames());
+			first.add("images/treasure/chest1.png");
+			first.add("images/treasure/treasurechest1.png");
+			first.add("images/powerups/crystal01.png");
+
+			later.add(LEVEL_BACKGROUNDS[1]);
+			later.addAll(TileMap.listImages("maps", "level2.txt"));
+			later.removeAll(first);
+		} catch (IOException e) {
+			//anything not preloaded is loaded when it is first used
+			System.err.println("Unable to list the images to load: " + e.getMessage());
+		}
+		levelAssets = loader.load(first);
+		loader.load(later);
+	} // startLoading
+
+	/**
+	 * Sets up the game once levelAssets has loaded: builds the maps and
+	 * sprites from the loaded images and starts the first level.
+	 */
+	private void finishLoading()
+	{
+		background = loadImage(LEVEL_BACKGROUNDS[0]); //set intial background image
 
-		// Load the tile map and print it out so we can check it is valid
-		tmapLevel1.loadMap("maps", "level1.txt");
-		tmapLevel2.loadMap("maps", "level2.txt");
+		// Load the tile map, taking its tiles from the asset cache; level 2's
+		// map is loaded when the level is reached
+		tmapLevel1.loadMap("maps", "level1.txt", assets);
 		currentLevelMap = tmapLevel1;
+		if (sweepAndPrune)
+			visibleSprites = new SweepAndPrune();
+		else
+			visibleSprites = new SpatialHash(tmapLevel1.getTileWidth(), tmapLevel1.getTileHeight());
+
+		// packs the creature animation frames so they are drawn from a few atlas pages
+		loadSpriteAtlas();
+
+		enemyHurtSound = sounds.load("sounds/enemyhurt.wav");
+		gameOverSound = sounds.load("sounds/gameover.wav");
+		goalSound = sounds.load("sounds/goal.wav");
 
 		// creates and loads the animations and assigns initial anim to global player
 		loadPlayer();
+		animations.add(player);
 
 		//loads goal sprite
 		loadTreasure();
@@ -116,14 +366,13 @@ public class Game extends GameCore
 
 		//create 10 power ups
 		for (int c= 0; c<10; c++) {
-			Animation anim = new Animation();
-			anim.addFrame(loadImage("images/powerups/crystal01.png"), 150);
-			crystals.add(new PowerUp.Crystal(anim));
+			crystals.add(loadCrystal());
 		}
 
 		initialiseGame();
+		loaded = true;
 
-	} //init
+	} // finishLoading
 
 
 	/**
@@ -141,18 +390,21 @@ public class Game extends GameCore
 		player.setY(0);
 		player.setVelocityX(0);
 		player.setVelocityY(0);
+		player.storePosition();
 		player.show();
 
 
 		//set enemies speed and locations
 		for (Creature e:enemies) {
 			//e.setX(400);
-			e.setX(SCREEN_WIDTH + (int)(Math.random()*600.0f));
+			e.setX(SCREEN_WIDTH + (int)(random.nextFloat()*600.0f));
 			e.setY(currentLevelMap.getPixelHeight()-2*e.getHeight());
 			e.setVelocityX(-0.01f);
+			e.storePosition();
 			e.show();
 
 			visibleSprites.add(e);
+			animations.add(e);
 		}
 
 		//set the crystal power up locations
@@ -162,6 +414,7 @@ public class Game extends GameCore
 			c.setX(cX);
 			cX+= currentLevelMap.getTileWidth();
 			c.setY(currentLevelMap.getTileHeight()*3);
+			c.storePosition();
 			c.show();
 			visibleSprites.add(c);
 		}
@@ -169,10 +422,11 @@ public class Game extends GameCore
 		//set the goal treasure location
 		treasure.setX(currentLevelMap.getPixelWidth()-4*currentLevelMap.getTileWidth());
 		treasure.setY(currentLevelMap.getPixelHeight()-2*currentLevelMap.getTileHeight());
+		treasure.storePosition();
 		treasure.show();
 		visibleSprites.add(treasure);
 
-		music.start();
+		music.play(LEVEL_MUSIC[level]);
 
 	} //initialiseGame
 
@@ -184,12 +438,17 @@ public class Game extends GameCore
 	public void restart(boolean newLevel) {
 		//clear all lists
 		visibleSprites.clear();
+		for (Creature e: enemies) {
+			animations.remove(e);
+		}
 		enemies.clear();
 		crystals.clear();
 
 		//if the player died and restart was called, clear the score
 		if (!newLevel)
 			total = 0;
+		else
+			music.play(LEVEL_MUSIC[level]);	//cross-fade to the new level's track
 
 
 		//set the player location again
@@ -197,6 +456,7 @@ public class Game extends GameCore
 		player.setY(0);
 		player.setVelocityX(0);
 		player.setVelocityY(0);
+		player.storePosition();
 		player.show();
 
 
@@ -208,18 +468,18 @@ public class Game extends GameCore
 
 		//create new powerups
 		for (int c= 0; c<10; c++) {
-			Animation anim = new Animation();
-			anim.addFrame(loadImage("images/powerups/crystal01.png"), 150);
-			crystals.add(new PowerUp.Crystal(anim));
+			crystals.add(loadCrystal());
 		}
 
 		//set positions for enemies
 		for (Creature e:enemies) {
-			e.setX(SCREEN_WIDTH + (int)(Math.random()*300.0f));
-			e.setY(currentLevelMap.getPixelHeight()-2*currentLevelMap.getTileHeight());
+			e.setX(SCREEN_WIDTH + (int)(random.nextFloat()*300.0f));
+			e.setY(currentLevelMap.getPixelHeight()-currentLevelMap.getTileHeight()-e.getHeight());
 			e.setVelocityX(-0.01f);
+			e.storePosition();
 			e.show();
 			visibleSprites.add(e);
+			animations.add(e);
 
 		}
 
@@ -230,6 +490,7 @@ public class Game extends GameCore
 			c.setX(cX);
 			cX+= currentLevelMap.getTileWidth();
 			c.setY(currentLevelMap.getTileHeight()*3);
+			c.storePosition();
 			c.show();
 			visibleSprites.add(c);
 		}
@@ -239,12 +500,88 @@ public class Game extends GameCore
 		//set its location
 		treasure.setX(currentLevelMap.getPixelWidth()-4*currentLevelMap.getTileWidth());
 		treasure.setY(currentLevelMap.getPixelHeight()-2*currentLevelMap.getTileHeight());
+		treasure.storePosition();
 		treasure.show();
 		visibleSprites.add(treasure);
 
 	} // restart
 
 	
+	/**
+	 * Replaces the current enemies with 'count' newly loaded enemies and
+	 * places them with placeEnemies(). Used by the benchmarks to control
+	 * how busy the level is.
+	 * 
+	 * @param count - the number of enemies to create
+	 */
+	void spawnEnemies(int count) {
+		for (Creature e: enemies) {
+			visibleSprites.remove(e);
+			animations.remove(e);
+		}
+		enemies.clear();
+
+		for (int e=0; e<count; e++) {
+			Creature enemy = loadEnemySprite();
+			enemies.add(enemy);
+			visibleSprites.add(enemy);
+			animations.add(enemy);
+		}
+		placeEnemies();
+	} // spawnEnemies
+
+	/**
+	 * Puts the player back at the start and spreads the enemies evenly
+	 * to the right of the screen, so repeated runs start from the same state
+	 */
+	void placeEnemies() {
+		player.setX(20);
+		player.setY(0);
+		player.setVelocityX(0);
+		player.setVelocityY(0);
+		player.setState(Creature.STATE_NORMAL);
+		player.storePosition();
+		player.show();
+
+		int count = enemies.size();
+		for (int i=0; i<count; i++) {
+			Creature e = enemies.get(i);
+			e.setX(SCREEN_WIDTH + (i*600.0f)/count);
+			e.setY(currentLevelMap.getPixelHeight()-currentLevelMap.getTileHeight()-e.getHeight());
+			e.setVelocityX(-0.01f);
+			e.setVelocityY(0);
+			e.setState(Creature.STATE_NORMAL);
+			e.storePosition();
+			e.show();
+		}
+		visibleSprites.update();
+	} // placeEnemies
+
+	/**
+	 * Restarts the game's randomness from 'seed'. Call before init() so
+	 * that the enemies are placed the same way as a recorded session.
+	 * 
+	 * @param seed - the seed for the random number generator
+	 */
+	void setSeed(long seed) {
+		this.seed = seed;
+		random.setSeed(seed);
+	} // setSeed
+
+	/**
+	 * @return the player sprite
+	 */
+	Creature getPlayer() {
+		return player;
+	}
+
+	/**
+	 * @return the tile map for the current level
+	 */
+	TileMap getCurrentMap() {
+		return currentLevelMap;
+	}
+
 	/**
 	 *  Pauses the game if not paused by stopping sprite movements
 	 */
@@ -272,24 +609,30 @@ public class Game extends GameCore
 	 *@param g - the graphics object to draw to  
 	 */
 	public void draw(Graphics2D g)
+	{
+		draw(g, 1.0f);
+	} //draw
+
+	/**
+	 * Draw the state of the game part way between the previous and
+	 * the latest update
+	 * 
+	 *@param g - the graphics object to draw to  
+	 *@param alpha - how far between the previous and latest update to draw
+	 */
+	public void draw(Graphics2D g, float alpha)
 	{    	
+		if (!loaded) {
+			drawLoading(g, levelAssets.getProgress());
+			return;
+		}
+
 		//set the game offsets
-		int xo = SCREEN_WIDTH/2 - Math.round(player.getX()) - currentLevelMap.getTileWidth();
+		int xo = cameraOffset(currentLevelMap, player.getDrawX(alpha));
 		int yo = 0;
 
-
-		//only the x offset is used in the current implementation
-		//so set a min and max for it
-		xo = Math.min(xo,  0);
-		xo = Math.max(xo, SCREEN_WIDTH - currentLevelMap.getPixelWidth());
-
-
-		//add offsets to the background
-		int backgroundX = xo * (SCREEN_WIDTH - background.getWidth(null)) /
-				(SCREEN_WIDTH - currentLevelMap.getPixelWidth());
-
 		//draw the background
-		g.drawImage(background, backgroundX, 0, null);
+		drawBackground(g, background, currentLevelMap, xo);
 
 		// Apply offsets to tile map and draw  it
 		currentLevelMap.draw(g,xo,yo);
@@ -310,23 +653,168 @@ public class Game extends GameCore
 
 		//aply offsets to player and draw
 		player.setOffsets(xo, yo);
-		player.draw(g);
+		player.draw(g, alpha);
 
 		// Apply offsets to sprites then draw them
 		Iterator<Creature> iE = enemies.iterator();
 		while (iE.hasNext()) {
 			Creature enemy = iE.next();
 			enemy.setOffsets(xo,yo);
-			enemy.draw(g);
+			enemy.draw(g, alpha);
+		}
+
+
+		drawStatus(g, total);
+
+	} //draw(alpha)
+
+	/**
+	 * Draw a snapshot of the game taken by writeSnapshot. Used when the
+	 * game is simulated and drawn on separate threads.
+	 * 
+	 *@param g - the graphics object to draw to  
+	 *@param snapshot - the latest snapshot of the game
+	 *@param alpha - how far between the previous and latest update to draw
+	 */
+	public void draw(Graphics2D g, SceneSnapshot snapshot, float alpha)
+	{
+		GameSnapshot s = (GameSnapshot)snapshot;
+		if (s.loading) {
+			drawLoading(g, s.progress);
+			return;
 		}
 
+		float playerX = (s.player >= 0) ? s.getDrawX(s.player, alpha) : 0;
+		int xo = cameraOffset(s.map, playerX);
 
+		drawBackground(g, s.background, s.map, xo);
+		s.map.draw(g, xo, 0);
+		s.draw(g, alpha, xo, 0);
+		drawStatus(g, s.total);
+
+	} //draw(snapshot)
+
+	/**
+	 * Works out the x offset needed to keep the player in the middle of
+	 * the screen without scrolling past either end of the map
+	 * 
+	 * @param map - the tile map being drawn
+	 * @param playerX - the x position the player is drawn at
+	 * @return the x offset to draw the map and sprites with
+	 */
+	private int cameraOffset(TileMap map, float playerX) {
+		int xo = SCREEN_WIDTH/2 - Math.round(playerX) - map.getTileWidth();
+
+		//only the x offset is used in the current implementation
+		//so set a min and max for it
+		xo = Math.min(xo,  0);
+		xo = Math.max(xo, SCREEN_WIDTH - map.getPixelWidth());
+		return xo;
+	} // cameraOffset
+
+	/**
+	 * Draws the background, scrolled in proportion to the map
+	 * 
+	 * @param g - the graphics object to draw to  
+	 * @param image - the background image
+	 * @param map - the tile map being drawn
+	 * @param xo - the x offset the map is drawn with
+	 */
+	private void drawBackground(Graphics2D g, Image image, TileMap map, int xo) {
+		//add offsets to the background
+		int backgroundX = xo * (SCREEN_WIDTH - image.getWidth(null)) /
+				(SCREEN_WIDTH - map.getPixelWidth());
+
+		//draw the background
+		g.drawImage(image, backgroundX, 0, null);
+	} // drawBackground
+
+	/**
+	 * Draws a progress bar while the images are loading
+	 * 
+	 * @param g - the graphics object to draw to  
+	 * @param progress - the fraction of the images loaded, from 0 to 1
+	 */
+	private void drawLoading(Graphics2D g, float progress) {
+		int w = getWidth(), h = getHeight();
+		int barWidth = w / 2, barHeight = 20;
+		int x = (w - barWidth) / 2, y = h / 2;
+
+		g.setColor(Color.black);
+		g.fillRect(0, 0, w, h);
+		g.setColor(Color.white);
+		g.drawString(String.format("Loading %d%%", Math.round(progress * 100)), x, y - 10);
+		g.drawRect(x, y, barWidth, barHeight);
+		g.fillRect(x, y, Math.round(barWidth * progress), barHeight);
+	} // drawLoading
+
+	/**
+	 * Draws the score and, if turned on, the frame time overlay
+	 * 
+	 * @param g - the graphics object to draw to  
+	 * @param score - the score to show
+	 */
+	private void drawStatus(Graphics2D g, long score) {
 		// Show score and status information
-		String msg = String.format("Score: %d", total/100);
+		String msg = String.format("Score: %d", score/100);
 		g.setColor(Color.darkGray);
 		g.drawString(msg, getWidth() - 80, 50);
 
-	} //draw
+		if (showFrameStats) {
+			getFrameStats().drawOverlay(g, 10, 40);
+		}
+	} // drawStatus
+
+	/**
+	 * Creates the snapshots handed from the simulation thread to the
+	 * render thread
+	 */
+	protected SceneSnapshot createSnapshot() {
+		return new GameSnapshot();
+	} // createSnapshot
+
+	/**
+	 * Records everything draw(snapshot) needs. Called on the simulation
+	 * thread after each batch of updates.
+	 * 
+	 * @param snapshot - the cleared snapshot to fill in
+	 */
+	protected void writeSnapshot(SceneSnapshot snapshot) {
+		GameSnapshot s = (GameSnapshot)snapshot;
+		s.loading = !loaded;
+		if (s.loading) {
+			s.progress = levelAssets.getProgress();
+			return;
+		}
+		s.background = background;
+		s.map = currentLevelMap;
+		s.total = total;
+
+		s.add(treasure);
+
+		for (PowerUp crystal: crystals) {
+			crystal.setScale((float)0.5);
+			s.add(crystal, currentLevelMap.getTileWidth()/4, currentLevelMap.getTileHeight(), true);
+		}
+
+		s.player = s.add(player);
+
+		for (Creature enemy: enemies) {
+			s.add(enemy);
+		}
+	} // writeSnapshot
+
+	/**
+	 * The game state needed to draw a frame besides the sprites themselves
+	 */
+	private static class GameSnapshot extends SceneSnapshot {
+		Image background;	// background image for the level
+		TileMap map;		// tile map for the level
+		long total;			// score
+		int player = -1;	// index of the player sprite in the snapshot
+		boolean loading;	// the images are still loading, so only the progress is drawn
+		float progress;		// fraction of the images loaded
+	}
 
 
 	/**
@@ -336,6 +824,20 @@ public class Game extends GameCore
 	 */    
 	public void update(long elapsed)
 	{
+		//until level 1's images have loaded there is nothing to update;
+		//the input waits in the queue and the ticks are not counted
+		if (!loaded) {
+			if (!levelAssets.isDone()) return;
+			finishLoading();
+		}
+
+		//apply the input that arrived since the last update, or
+		//the recorded input for this update when replaying
+		tick++;
+		if (replay != null)
+			replay.replay(tick, this);
+		else
+			input.drain(this);
 
 		//if the player is dead, game over
 		if (player.getState() == Creature.STATE_DEAD) {
@@ -343,6 +845,14 @@ public class Game extends GameCore
 		} else if (paused) { //paused, do nothing
 			pause();
 		} else {
+			//remember where the moving sprites started this update
+			//so they can be drawn part way between updates
+			//(index loops rather than iterators, so a tick allocates nothing)
+			player.storePosition();
+			for (int i = 0; i < enemies.size(); i++) {
+				enemies.get(i).storePosition();
+			}
+
 			//apply gravity
 			player.setVelocityY(player.getVelocityY()+(GRAVITY*elapsed));
 
@@ -351,12 +861,12 @@ public class Game extends GameCore
 
 			// Now update the sprites animation and position
 
-			Iterator<Creature> iE = enemies.iterator();
-			while (iE.hasNext()) {
-				Creature enemy = (Creature)iE.next();
+			for (int i = 0; i < enemies.size(); i++) {
+				Creature enemy = enemies.get(i);
 				if (enemy.getState() == Creature.STATE_DYING) {
-					iE.remove();
+					enemies.remove(i--);
 					visibleSprites.remove(enemy);
+					animations.remove(enemy);
 				} else {
 					enemy.setVelocityY(enemy.getVelocityY()+(GRAVITY*elapsed));
 					updateCreature(enemy, elapsed);
@@ -364,23 +874,27 @@ public class Game extends GameCore
 				}
 			}
 
-			Iterator<PowerUp> iC = crystals.iterator();
-			while (iC.hasNext()) {
-				PowerUp crystal = (PowerUp)iC.next();
+			for (int i = 0; i < crystals.size(); i++) {
+				PowerUp crystal = crystals.get(i);
 				if (crystal.isCollected()) {
-					iC.remove();
+					crystals.remove(i--);
 					visibleSprites.remove(crystal);
 				}
 			}
 
 			treasure.update(elapsed);
 
+			//relist the sprites that moved before the player looks for collisions
+			visibleSprites.update();
+
 			processInput();
 
 			//update player position and animation
 			updateCreature(player, elapsed);
 			player.update(elapsed);
 
+			//advance the creatures' animations in one batch
+			animations.update(elapsed);
 		}
 	} //update
 
@@ -424,43 +938,79 @@ public class Game extends GameCore
 
 	/**
 	 * 
-	 * Updates the sprite passed in, moving their position if possible
-	 * otherwise triggering collision handling
+	 * Updates the sprite passed in, moving it as far as it can go this
+	 * update before it runs into the tile map. A sprite that hits a wall
+	 * turns round and one that hits a floor or ceiling stops moving
+	 * vertically; either way it slides along the surface for the rest of
+	 * the update.
 	 * 
 	 * @param sprite - the sprite to be updated
 	 * @param elapsed - duration since start of game
 	 */
 	private void updateCreature(Creature sprite, long elapsed) {
-		//get the current creature speed in each direction
-		float dx = sprite.getVelocityX();
-		float dy = sprite.getVelocityY();
+		//the distance the creature wants to move in each direction
+		float dx = sprite.getVelocityX()*elapsed;
+		float dy = sprite.getVelocityY()*elapsed;
+
+		//the box that collides with the map, inset from the left of the image
+		float x = sprite.getX() + COLLISION_INSET;
+		float y = sprite.getY();
+		float width = sprite.getBoxWidth() - COLLISION_INSET;
+		float height = sprite.getBoxHeight();
+
+		boolean landed = false;
+
+		//a box can hit at most a wall and a floor or ceiling in one update
+		for (int contact = 0; contact < 2 && (dx != 0 || dy != 0); contact++) {
+			if (!collider.sweep(currentLevelMap, x, y, width, height, dx, dy)) {
+				x += dx;
+				y += dy;
+				break;
+			}
 
-		if (cornerCollision(sprite,elapsed)) {
-			handleTileMapCollisions(sprite, elapsed, false);
-		} else {
-			//update as expected
-			sprite.setX(sprite.getX()+dx*elapsed); 
-			sprite.setY(sprite.getY()+dy*elapsed);
+			//move up to the surface then slide along it with what is left
+			x = collider.getX();
+			y = collider.getY();
+			float remaining = 1.0f - collider.getTime();
+			dx *= remaining;
+			dy *= remaining;
 
-			//check for sprite colliison
-			if(sprite.equals(player)) {
-				checkPlayerCollision(player, true);
+			if (collider.getNormalX() != 0) {
+				sprite.setVelocityX(-sprite.getVelocityX());
+				dx = 0;
+			} else {
+				landed |= (collider.getNormalY() < 0);
+				sprite.setVelocityY(0);
+				dy = 0;
 			}
-			//handle map collisions, player moved is true
-			handleTileMapCollisions(sprite, elapsed, true);
 		}
 
+		sprite.setX(x - COLLISION_INSET);
+		sprite.setY(y);
+
+		if (landed) {
+			sprite.setOnGround(true);
+			sprite.setUpCount(0);
+		}
+
+		//check for sprite collision, the player can only kill
+		//enemies while it is in the air
+		if (sprite.equals(player)) {
+			checkPlayerCollision(player, !landed);
+		}
+
+		handleTileMapCollisions(sprite);
+
 	} // updateCreature
 
 
 	/**
-	 * Checks and handles collisions with the tile map for the
-	 * given sprite 's'.
+	 * Keeps the given sprite inside the left and right edges of the
+	 * map, and notes when it is down on the ground.
 	 * 
-	 * @param s			The Sprite to check collisions for
-	 * @param elapsed	How time has gone by
+	 * @param sprite	The Sprite to check
 	 */
-	public void handleTileMapCollisions(Creature sprite, long elapsed, boolean spriteMoved)
+	public void handleTileMapCollisions(Creature sprite)
 	{		
 		//if the player is at the far left or right of the map
 		if (sprite.getX() < 2) 
@@ -472,25 +1022,6 @@ public class Game extends GameCore
 			sprite.setX(currentLevelMap.getPixelWidth() - sprite.getImage().getWidth(null) - 2);	
 		}
 
-		float dx = sprite.getVelocityX();
-		float dy = sprite.getVelocityY();
-
-		float currY = sprite.getY();
-
-		if (!spriteMoved) { //if the sprite hasn't moved since the last update
-			//collisionX(sprite, elapsed);
-			int proposedNewX = (int)(sprite.getX()+dx*elapsed);
-			moveX(sprite, elapsed, proposedNewX);
-
-			int proposedNewY = (int)(sprite.getY() + dy * elapsed);
-			//moveY(sprite, elapsed, proposedNewY);
-
-			if (sprite.equals(player)) {
-				boolean canKill = (currY < sprite.getY());
-				checkPlayerCollision(player, canKill);
-			}
-		} 
-		
 		//the player is below the ground
 		if (sprite.getY() + sprite.getHeight() >= (currentLevelMap.getPixelHeight() - currentLevelMap.getTileHeight() - 2 )) {
 			sprite.setOnGround(true);
@@ -499,159 +1030,6 @@ public class Game extends GameCore
 	} // handleTileMapCollisions
 
 
-	/**
-	 * 
-	 * Moves the x position of a sprite after a collision has been detected
-	 * 
-	 * @param sprite
-	 * @param elapsed
-	 * @param proposedNewX
-	 */
-	private void moveX(Creature sprite, long elapsed, int proposedNewX) {
-		//current speed of sprite  in the x direction
-		float dx = sprite.getVelocityX();
-
-		//whether or not there has been a collision
-		boolean collision = false;
-
-		int newX = (int)sprite.getX();
-
-
-		// while we still have not collided and we have less than the proposed amount
-		if (sprite.getX() + sprite.getImage().getWidth(null) >= currentLevelMap.getPixelWidth()) {
-			sprite.setVelocityX(-sprite.getVelocityX());
-			sprite.setX(currentLevelMap.getPixelWidth() - sprite.getImage().getWidth(null) - 2);	
-		} else {
-			if ( dx > 0) {
-				while (!collision) {
-					newX = (int)sprite.getX() + 2;
-
-						int tileX = (int)Math.floor((newX + sprite.getWidth())/currentLevelMap.getTileWidth());
-						int tileY = (int)Math.floor((sprite.getY()+sprite.getHeight()/2)/currentLevelMap.getTileHeight());
-
-						int topTileY = tileY -1;
-						
-						if (currentLevelMap.getTileChar(tileX, tileY) == '.'  && currentLevelMap.getTileChar(tileX, topTileY) == '.' ) {
-							sprite.setX(newX);
-							collision = true;
-							break;
-						} else {
-							collision = true;
-							sprite.setX((currentLevelMap.getTileXC(tileX, tileY)) - sprite.getWidth());
-							sprite.setVelocityX(-sprite.getVelocityX());
-							sprite.setX(sprite.getX()-2);
-							break;
-						}
-
-					}
-			}
-
-			if ( dx < 0) {
-				while (newX >= proposedNewX) {
-					if (!collision) {
-						newX = (int)sprite.getX() - 2;
-
-						int tileX = (int)Math.floor(newX/currentLevelMap.getTileWidth());
-						int tileY = (int)Math.floor((sprite.getY()+sprite.getHeight()/2)/currentLevelMap.getTileHeight());
-
-						int topTileY = tileY -1;
-						
-						if (currentLevelMap.getTileChar(tileX, tileY) == '.'  && currentLevelMap.getTileChar(tileX,topTileY) == '.' && currentLevelMap.getTileChar(tileX, tileY) != 'g') {
-							sprite.setX(newX);
-							break;
-						} else {
-							collision = true;
-							sprite.setX(currentLevelMap.getTileXC(tileX+1, tileY));
-							sprite.setX(sprite.getX()+2);
-							sprite.setVelocityX(-sprite.getVelocityX());
-							break;
-						}
-
-					}
-				}
-			}
-		}
-
-	} //moveX
-
-
-	/**
-	 * 
-	 * Moves the y position of a sprite after a collision has been detected
-	 * 
-	 * @param sprite
-	 * @param elapsed
-	 * @param proposedNewY
-	 */
-	private void moveY(Creature sprite, long elapsed, int proposedNewY) {
-
-		//current speed of sprite  in the x direction
-		float dy = sprite.getVelocityY();
-
-		//whether or not there has been a collision
-		boolean collision = false;
-
-		int newY = (int)sprite.getY();
-
-		// while we still have not collided and we have less than the proposed amount
-
-		if ( dy > 0) {
-			// check if is top collision or bottom collision
-			while (newY <= proposedNewY) {
-				if (!collision) {
-					newY = (int)sprite.getY() + 2;
-
-					int tileX = (int)Math.floor((sprite.getX()+sprite.getWidth()/2)/currentLevelMap.getTileWidth());
-					int tileY = (int)Math.floor((newY + sprite.getHeight())/currentLevelMap.getTileHeight());
-
-					int leftTileX = tileX -1;
-					int rightTileX = tileX +1;
-
-					if (currentLevelMap.getTileChar(tileX, tileY) == '.' && currentLevelMap.getTileChar(rightTileX, tileY) == '.' &&
-							currentLevelMap.getTileChar(leftTileX, tileY) == '.' && currentLevelMap.getTileChar(tileX, tileY) != 'g' && currentLevelMap.getTileChar(tileX, tileY) != '?') {
-						sprite.setY(newY-1);
-						collision = true;
-						break;
-					} else {
-						collision = true;
-						sprite.setOnGround(collision);
-						sprite.setUpCount(0);
-						sprite.setVelocityY(0);
-						break;
-					}
-
-				}
-			}
-		}
-
-		if ( dy < 0) {
-			// check if is left collision or right collision
-			while (newY >= proposedNewY) {
-				if (!collision) {
-					newY = (int)sprite.getY() - 2;
-
-					int tileX = (int)Math.floor((sprite.getX()+sprite.getWidth()/2)/currentLevelMap.getTileWidth());
-					int tileY = (int)Math.floor((newY/currentLevelMap.getTileHeight()));
-
-					int leftTileX = tileX -1;
-					int rightTileX = tileX +1;
-
-					if (currentLevelMap.getTileChar(tileX, tileY) == '.'  && currentLevelMap.getTileChar(rightTileX, tileY) == '.' &&
-							currentLevelMap.getTileChar(leftTileX, tileY) == '.' && currentLevelMap.getTileChar(tileX, tileY) != 'g' && currentLevelMap.getTileChar(tileX, tileY) != 'l' && currentLevelMap.getTileChar(tileX, tileY) != '?') {
-						sprite.setY(newY);
-						break;
-					} else {
-						collision = true;
-						sprite.setY(currentLevelMap.getTileYC(tileX, tileY+1));
-						sprite.setVelocityY(0);
-						break;
-					}
-
-				}
-			}
-		}
-	} //moveY
-
 	/**
 	 * Checks player collision with another sprite
 	 * 
@@ -695,8 +1073,7 @@ public class Game extends GameCore
 				this.rightIsPressed = false;
 				enemy.setVelocityX(0);
 				player.jump(true);						//make the player jump even though they arent on the ground
-				Sound enemyDieSound = new Sound("sounds/enemyhurt.wav"); //load and play enemy hurt sound
-				enemyDieSound.start();
+				sounds.play(enemyHurtSound);			//play enemy hurt sound
 				enemy.setState(Creature.STATE_DYING);						//set enemy to dying
 				total+=1000;												//increase score
 				//player.setY(enemy.getY() - player.getHeight());				//move the player up
@@ -706,8 +1083,7 @@ public class Game extends GameCore
 				this.rightIsPressed = false;				//the enemy kills the player
 
 				player.setState(Creature.STATE_DYING);
-				Sound s = new Sound("sounds/gameover.wav");
-				s.start();
+				sounds.play(gameOverSound);
 			}
 		}
 	}
@@ -732,14 +1108,17 @@ public class Game extends GameCore
 	 * @param collisionSprite
 	 */
 	private void collectTreasure(Sprite collisionSprite) {
-		Sound s = new Sound("sounds/goal.wav");
-		s.start();								   //load and play the goal sound
+		sounds.play(goalSound);					   //play the goal sound
 		treasure.setAnimationFrame(1);			   //set the treasue frame to open
 		((PowerUp.Goal) collisionSprite).setCollected(true); //set the treasure to collected
 		visibleSprites.remove(collisionSprite);		//remove the treasure from the list of visible sprites
 		level++;									//increment the level
+		//level 2's images have been loading in the background since startLoading,
+		//so its map and background are normally ready without waiting
+		if (tmapLevel2.getMapWidth() == 0)
+			tmapLevel2.loadMap("maps", "level2.txt", assets);
 		currentLevelMap = tmapLevel2;				//set the current map to level 2 (as there are only two levels)
-		background = backgroundLevel2;				//set the background image to level 2 background
+		background = loadImage(LEVEL_BACKGROUNDS[1]);	//set the background image to level 2 background
 		total+=5000;								//increase the score
 		if ( level < 2) {
 			restart(true);							//restart new level parameter is true
@@ -755,14 +1134,15 @@ public class Game extends GameCore
 	 */
 	public Sprite getSpriteCollision(Creature player) {
 
-		// run through the list of Sprites
-		Iterator<Sprite> i = visibleSprites.iterator();
-		while (i.hasNext()) {
-			Sprite otherSprite = (Sprite)i.next();
+		// only check the sprites in the grid cells around the player
+		candidates.clear();
+		visibleSprites.query(player.getX(), player.getY(), player.getWidth(), player.getHeight(), candidates);
+
+		for (int i = 0; i < candidates.size(); i++) {
+			Sprite otherSprite = candidates.get(i);
 			if (boundingBoxCollision(player, otherSprite)) {
 				// collision found, return the Sprite
 				return otherSprite;
-				//}
 			}
 		}
 
@@ -783,10 +1163,7 @@ public class Game extends GameCore
 			return false;
 		}
 
-		Rectangle r1 = s1.getBoundingRectSprite();
-		Rectangle r2 = s2.getBoundingRectSprite();
-
-		return r1.intersects(r2);
+		return s1.intersects(s2);
 
 	}//boundingBoxCollision
 
@@ -820,38 +1197,44 @@ public class Game extends GameCore
 
 
 	/**
-	 * Checks whether a collision has occurred at any of a sprite's
-	 * corners
-	 * 
-	 * @param sprite
-	 * @param elapsed
-	 * @return
+	 * Adds a texture atlas holding the player and enemy animation frames
+	 * to the asset cache, so that loadAnimation gets its frames from the
+	 * atlas. The atlas at SPRITE_ATLAS is used if it has been built
+	 * offline, otherwise the frames are packed now.
 	 */
-	private boolean cornerCollision(Creature sprite, long elapsed) {
-		// do this for all four corners - reject movement if true;
-		// when you do this for all four corners make sure to "switch off checking for the ground
-		// and add a constant to say where ground level is in the tilemap file
-
-		Point[] spriteCorners = sprite.getCorners();
-
-		for (int i = 0; i < spriteCorners.length; i++) {
-
-			float oldX = spriteCorners[i].x;
-			float newX = oldX + sprite.getVelocityX()*elapsed;
-			float oldY = spriteCorners[i].y;
-			float newY = oldY + sprite.getVelocityY()*elapsed;
-
-			int tileX = (int)Math.floor(newX/currentLevelMap.getTileWidth());
-			int tileY = (int)Math.floor(newY/currentLevelMap.getTileHeight());
-
-			if ((currentLevelMap.getTileChar(tileX, tileY) != '.')  && currentLevelMap.getTileChar(tileX, tileY) != '?' )  {
-				return true;
+	private void loadSpriteAtlas() {
+		TextureAtlas atlas;
+		try {
+			if (new File(SPRITE_ATLAS).exists()) {
+				atlas = TextureAtlas.read(SPRITE_ATLAS);
+			} else {
+				//the frames have already been decoded by the loader
+				ArrayList<String> paths = creatureFrames();
+				BufferedImage [] frames = new BufferedImage[paths.size()];
+				for (int i = 0; i < frames.length; i++) {
+					Image image = loadImage(paths.get(i));
+					if (!(image instanceof BufferedImage))
+						throw new IOException("Unable to read '" + paths.get(i) + "'");
+					frames[i] = (BufferedImage)image;
+				}
+				atlas = TextureAtlas.pack(paths, frames, TextureAtlas.DEFAULT_PAGE_SIZE);
 			}
+		} catch (IOException e) {
+			//the frames are loaded from their own files instead
+			System.err.println("Unable to load sprite atlas: " + e.getMessage());
+			return;
 		}
+		assets.addAtlas(atlas);
+	} // loadSpriteAtlas
 
-		return false;
-	} // cornerCollision
-
+	/**
+	 * @return the paths of the player and enemy animation frames
+	 */
+	private ArrayList<String> creatureFrames() {
+		ArrayList<String> paths = new ArrayList<String>(TextureAtlas.findImages("images/player"));
+		paths.addAll(TextureAtlas.findImages("images/enemies"));
+		return paths;
+	} // creatureFrames
 
 	/**
 	 * load the animations for the player and initialises the player sprite
@@ -900,22 +1283,61 @@ public class Game extends GameCore
 	 */
 	private Animation loadAnimation(String fileName, String direction, String action) {
 
-		Animation anim = new Animation();
-		int frames = new File("images/"+fileName+"/"+direction+"/"+action).list().length;
+		//the frames are only loaded once, then shared by every sprite that uses them
+		String folder = "images/"+fileName+"/"+direction+"/"+action;
+		Animation anim = assets.getAnimation(folder);
+		if (anim != null)
+			return anim;
+
+		anim = new Animation();
+		int frames = new File(folder).list().length;
 
 		for (int i = 0; i< frames-1; i++) {
-			Image image = loadImage("images/"+fileName+"/"+direction+
-					"/"+action+"/"+action+i+".png");
+			Image image = loadImage(folder+"/"+action+i+".png");
 			anim.addFrame(image, 200);
 		}
-		return anim;
+		return assets.putAnimation(folder, anim);
 	} // loadAnimation
 
+	/**
+	 * Creates a crystal power up sharing the crystal animation
+	 * @return a new crystal
+	 */
+	private PowerUp.Crystal loadCrystal() {
+		String key = "images/powerups/crystal";
+		Animation anim = assets.getAnimation(key);
+		if (anim == null) {
+			anim = new Animation();
+			anim.addFrame(loadImage("images/powerups/crystal01.png"), 150);
+			anim = assets.putAnimation(key, anim);
+		}
+		return new PowerUp.Crystal(anim);
+	} // loadCrystal
+
+	/**
+	 * Loads an image through the asset cache, so each file is only
+	 * read and decoded once however many sprites use it
+	 * 
+	 * @param fileName - the path of the image file
+	 * @return the shared image
+	 */
+	@Override
+	public Image loadImage(String fileName) {
+		return assets.getImage(fileName);
+	} // loadImage
+
+	/**
+	 * @return the cache holding the game's images and animations
+	 */
+	AssetCache getAssets() {
+		return assets;
+	}
+
 	/**
 	 * loads animations for and creates an enemy sprite
 	 * @return an enemy sprite(Creature)
 	 */
-	private Creature loadEnemySprite() {
+	Creature loadEnemySprite() {
 		Animation deadRight = loadAnimation("enemies", "right", "die");
 		Animation idleRight = loadAnimation("enemies", "right", "idle");
 		Animation walkRight = loadAnimation("enemies", "right", "walk");
@@ -934,56 +1356,118 @@ public class Game extends GameCore
 	} // loadEnemySprite
 
 
+	/**
+	 * Applies an input event at the start of an update, recording it
+	 * if the session is being recorded. Events are queued by the event
+	 * handlers below rather than applied straight away so that they
+	 * always take effect on a tick boundary.
+	 * 
+	 * @param type - one of the InputQueue event types
+	 * @param value - the key code, mouse x position or wheel rotation
+	 */
+	public void handleInput(int type, int value) {
+		if (recording != null)
+			recording.add(tick, type, value);
+
+		switch (type) {
+		case InputQueue.KEY_PRESSED :
+			switch(value) {
+			case KeyEvent.VK_ESCAPE	: stop(); break;
+			case KeyEvent.VK_W		: jumpIsPressed = true; break;
+			case KeyEvent.VK_Q		: restart(false); break;
+			case KeyEvent.VK_D	: rightIsPressed = true; break;
+			case KeyEvent.VK_A	: leftIsPressed = true; break;
+			case KeyEvent.VK_K	: attackIsPressed = true; break;
+			default : break;
+			}
+			break;
+		case InputQueue.KEY_RELEASED :
+			switch (value) {
+			case KeyEvent.VK_ESCAPE : stop(); break;
+			case KeyEvent.VK_W    	: jumpIsPressed = false; break;
+			case KeyEvent.VK_Q		: restart(false); break;
+			case KeyEvent.VK_D 	: rightIsPressed = false; break;
+			case KeyEvent.VK_A   : leftIsPressed = false; break;
+			case KeyEvent.VK_P		: paused = !paused; break;
+			case KeyEvent.VK_K	: attackIsPressed = false; break;
+			default :  break;
+			}
+			break;
+		case InputQueue.MOUSE_PRESSED :
+			//the click is in screen coordinates, so compare it with
+			//where the player is drawn rather than its place in the level
+			float playerScreenX = player.getX() + cameraOffset(currentLevelMap, player.getX());
+			if (value < playerScreenX)
+				leftIsPressed = true;
+			if (value > playerScreenX)
+				rightIsPressed = true;
+			break;
+		case InputQueue.MOUSE_RELEASED :
+			leftIsPressed = false;
+			rightIsPressed = false;
+			break;
+		case InputQueue.MOUSE_WHEEL :
+			if (value > 2)
+				player.jump(false);
+			break;
+		default : break;
+		}
+	} // handleInput
+
+	/**
+	 * Stops the game, saving the session first if it is being recorded.
+	 * Called from handleInput so the recording is saved on the thread
+	 * that writes it.
+	 */
+	public void stop() {
+		if (recording != null) {
+			recording.setTicks(tick);
+			try {
+				recording.save(recordingPath);
+				System.out.println("Saved " + tick + " ticks of input to " + recordingPath);
+			} catch (IOException e) {
+				System.err.println("Unable to save recording: " + e.getMessage());
+			}
+			recording = null;
+		}
+		loader.shutdown();
+		music.close();
+		sounds.close();
+		super.stop();
+	} // stop
+
 	@Override
 	public void mousePressed(MouseEvent e) {
-		if (e.getX() < player.getX())
-			leftIsPressed = true;
-		if (e.getX() > player.getX());
-		rightIsPressed = true;
+		input.add(InputQueue.MOUSE_PRESSED, e.getX());
 	}
 
 	@Override
 	public void mouseReleased(MouseEvent e) {
-		leftIsPressed = false;
-		rightIsPressed = false;
-
+		input.add(InputQueue.MOUSE_RELEASED, e.getX());
 	}
 
 	@Override
 	public void mouseWheelMoved(MouseWheelEvent e) {
-		if (e.getWheelRotation() > 2)
-			player.jump(false);
-
+		input.add(InputQueue.MOUSE_WHEEL, e.getWheelRotation());
 	}
 
 	/**
 	 * Override of the keyPressed event defined in GameCore to catch our
-	 * own events
+	 * own events. Keys are queued for the next update.
 	 * 
 	 *  @param e The event that has been generated
 	 */
 	public void keyPressed(KeyEvent e) 
 	{ 
-		int key = e.getKeyCode();
-
-		switch(key) {
-		case KeyEvent.VK_ESCAPE	: stop(); break;
-		case KeyEvent.VK_W		: jumpIsPressed = true; break;
-		case KeyEvent.VK_Q		: restart(false); break;
-		//case KeyEvent.VK_S		: Sound s = new Sound("sounds/caw/wav"); s.start(); break;
-		case KeyEvent.VK_D	: rightIsPressed = true; break;
-		case KeyEvent.VK_A	: leftIsPressed = true; break;
-		case KeyEvent.VK_K	: attackIsPressed = true; break;
-		//case KeyEvent.VK_P		: paused = !paused; break;
-		default : break;
-		}
+		input.add(InputQueue.KEY_PRESSED, e.getKeyCode());
 
 		e.consume();
 	}// keyPressed
 
 	/**
 	 * Override of the keyPressed event defined in GameCore to catch our
-	 * own events
+	 * own events. Keys that change the game are queued for the next update,
+	 * display toggles take effect straight away.
 	 * 
 	 *  @param e The event that has been generated
 	 */
@@ -993,14 +1477,8 @@ public class Game extends GameCore
 
 		switch (key)
 		{
-		case KeyEvent.VK_ESCAPE : stop(); break;
-		case KeyEvent.VK_W    	: jumpIsPressed = false; break;
-		case KeyEvent.VK_Q		: restart(false); break;
-		case KeyEvent.VK_D 	: rightIsPressed = false; break;
-		case KeyEvent.VK_A   : leftIsPressed = false; break;
-		case KeyEvent.VK_P		: paused = !paused; break;
-		case KeyEvent.VK_K	: attackIsPressed = false; break;
-		default :  break;
+		case KeyEvent.VK_F3	: showFrameStats = !showFrameStats; break;
+		default : input.add(InputQueue.KEY_RELEASED, key); break;
 		}
 
 		e.consume();